@@ -36,7 +36,9 @@ import nz.ac.waikato.cms.locator.ClassLocator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -47,6 +49,9 @@ import java.util.Set;
 public abstract class AbstractCommand
   implements Command {
 
+  /** the command classes, indexed by name (lazily initialized). */
+  protected static Map<String,Class> m_CommandClasses;
+
   /** the environment to use. */
   protected Environment m_Env;
 
@@ -56,6 +61,9 @@ public abstract class AbstractCommand
   /** the output listeners. */
   protected Set<OutputListener> m_OutputListeners;
 
+  /** the re-usable output event. */
+  protected OutputEvent m_OutputEvent;
+
   /**
    * Initializes the command.
    */
@@ -70,6 +78,7 @@ public abstract class AbstractCommand
   protected void initialize() {
     m_Errors          = null;
     m_OutputListeners = new HashSet<>();
+    m_OutputEvent     = null;
   }
 
   /**
@@ -102,14 +111,14 @@ public abstract class AbstractCommand
     }
 
     result.append(getName() + (requiresEnvironment() ? " <env>" : "")
-      + (getParser() != null ? " <options>" : "")
+      + (CommandUtils.getParser(this) != null ? " <options>" : "")
       + (supportsAdditionalArguments() ? " <args>" : "")
       + (this instanceof CommandWithFilterSupport ? " | output filter(s)" : "")+ "\n");
 
     for (String line: getHelp().split("\n"))
       result.append("\t").append(line).append("\n");
 
-    parser = getParser();
+    parser = CommandUtils.getParser(this);
     if (outputParser && (parser != null)) {
       result.append("\n");
       result.append(parser.generateHelpScreen(false, false, false, true));
@@ -197,12 +206,17 @@ public abstract class AbstractCommand
    */
   @Override
   public void println(String line, boolean stdout) {
-    if (stdout)
-      System.out.println(line);
-    else
-      System.err.println(line);
-    for (OutputListener l: m_OutputListeners)
-      l.outputOccurred(line, stdout);
+    if (!CommandUtils.isConsoleRedirected(m_OutputListeners)) {
+      if (stdout)
+	System.out.println(line);
+      else
+	System.err.println(line);
+    }
+    if (!m_OutputListeners.isEmpty()) {
+      if (m_OutputEvent == null)
+	m_OutputEvent = new OutputEvent(this, getName());
+      OutputEvent.notifyListeners(m_OutputListeners, m_OutputEvent, line, stdout);
+    }
   }
 
   /**
@@ -291,7 +305,7 @@ public abstract class AbstractCommand
     ArgumentParser	parser;
     Namespace ns;
 
-    parser = getParser();
+    parser = CommandUtils.getParser(this);
     ns     = null;
     if (parser != null) {
       try {
@@ -366,6 +380,24 @@ public abstract class AbstractCommand
     return result;
   }
 
+  /**
+   * Returns the command classes, indexed by their name.
+   *
+   * @return		the classes
+   */
+  public static synchronized Map<String,Class> getCommandClasses() {
+    Map<String,Class>	result;
+
+    if (m_CommandClasses == null) {
+      result = new HashMap<>();
+      for (Command cmd: getCommands())
+	result.putIfAbsent(cmd.getName(), cmd.getClass());
+      m_CommandClasses = result;
+    }
+
+    return m_CommandClasses;
+  }
+
   /**
    * Returns the command associated with the command name.
    *
@@ -373,17 +405,18 @@ public abstract class AbstractCommand
    * @return		the command, null if not available
    */
   public static Command getCommand(String name) {
-    Command		result;
+    Class	cls;
 
-    result = null;
-    for (Command cmd: getCommands()) {
-      if (cmd.getName().equals(name)) {
-        result = cmd;
-        break;
-      }
-    }
+    cls = getCommandClasses().get(name);
+    if (cls == null)
+      return null;
 
-    return result;
+    try {
+      return (Command) cls.newInstance();
+    }
+    catch (Exception e) {
+      return null;
+    }
   }
 
   /**
@@ -26,6 +26,8 @@ import com.github.fracpete.processoutput4j.output.StreamingProcessOutput;
 import com.github.fracpete.wekavirtualenv.command.filter.Filter;
 import com.github.fracpete.wekavirtualenv.command.filter.FilterChain;
 import com.github.fracpete.wekavirtualenv.core.Destroyable;
+import com.github.fracpete.wekavirtualenv.core.HashUtils;
+import com.github.fracpete.wekavirtualenv.core.ResultCache;
 import com.github.fracpete.wekavirtualenv.env.Environments;
 import nz.ac.waikato.cms.core.Utils;
 import nz.ac.waikato.cms.jenericcmdline.core.OptionUtils;
@@ -52,6 +54,18 @@ public abstract class AbstractLaunchCommand
   /** for intercepting the process output. */
   protected FilterChain m_FilterChain;
 
+  /** whether the process got terminated on request of a filter. */
+  protected boolean m_Terminated;
+
+  /** whether the process got destroyed. */
+  protected boolean m_Destroyed;
+
+  /** for capturing the output for the cache, null if not caching. */
+  protected ResultCache.Result m_Capture;
+
+  /** the exit code of the replayed result, null if not replayed. */
+  protected Integer m_CachedExitCode;
+
   /**
    * For initializing the members.
    */
@@ -182,9 +196,17 @@ public abstract class AbstractLaunchCommand
    * @param stdout	whether stdout or stderr
    */
   public synchronized void processOutput(String line, boolean stdout) {
+    if (m_Terminated)
+      return;
+    if (m_Capture != null)
+      m_Capture.add(line, stdout);
     line = m_FilterChain.intercept(line, stdout);
     if (line != null)
       println(line, stdout);
+    if (m_FilterChain.isTerminationRequested()) {
+      m_Terminated = true;
+      destroy();
+    }
   }
 
   /**
@@ -196,6 +218,8 @@ public abstract class AbstractLaunchCommand
   protected boolean launch(ProcessBuilder builder) {
     try {
       println("Command: " + Utils.flatten(builder.command(), " "), true);
+      m_FilterChain.start();
+      m_Terminated = false;
       m_Output = new StreamingProcessOutput(this);
       m_Output.monitor(builder);
       return true;
@@ -205,14 +229,159 @@ public abstract class AbstractLaunchCommand
       return false;
     }
     finally {
+      finishFilters();
       m_OutputListeners.clear();
     }
   }
 
+  /**
+   * Generates the key for caching the result of the process: the command
+   * line, the environment variables of the environment, the content of the
+   * jars on the classpath and of any files among the options and the
+   * installed packages.
+   *
+   * @param builder	the builder to generate the key for
+   * @return		the key
+   * @throws Exception	if hashing of files fails
+   */
+  protected String getCacheKey(ProcessBuilder builder) throws Exception {
+    List<String>	parts;
+    File		file;
+    File[]		packages;
+
+    parts = new ArrayList<>();
+    parts.add(m_Env.name);
+    parts.add("" + m_Env.envvars);
+    for (String cp: m_Env.weka.split(File.pathSeparator)) {
+      file = new File(cp);
+      if (file.isFile())
+	parts.add(HashUtils.hash(file));
+    }
+    packages = new File(Environments.getWekaFilesDir(m_Env.name), "packages").listFiles();
+    if (packages != null) {
+      Arrays.sort(packages);
+      for (File pkg: packages)
+	parts.add(pkg.getName() + "@" + pkg.lastModified());
+    }
+    for (String option: builder.command()) {
+      parts.add(option);
+      file = new File(option);
+      if (file.isFile())
+	parts.add(HashUtils.hash(file));
+    }
+
+    return HashUtils.hash(parts);
+  }
+
+  /**
+   * Launches the process, unless a result is already cached in which case
+   * the cached output and exit code get replayed. Results of processes that
+   * exited with code 0 get stored in the cache.
+   *
+   * @param builder	the builder to use
+   * @param cache	the cache to use
+   * @return		true if successful
+   */
+  protected boolean launch(ProcessBuilder builder, ResultCache cache) {
+    boolean	result;
+    String	key;
+
+    m_CachedExitCode = null;
+    try {
+      key = getCacheKey(builder);
+    }
+    catch (Exception e) {
+      addError("Failed to generate cache key, launching without cache!", e);
+      return launch(builder);
+    }
+
+    // replay
+    if (cache.contains(key)) {
+      try {
+	println("Command (cached): " + Utils.flatten(builder.command(), " "), true);
+	m_FilterChain.start();
+	m_Terminated     = false;
+	m_CachedExitCode = cache.replay(key, (String line, boolean stdout) -> processOutput(line, stdout));
+	if (m_CachedExitCode != null)
+	  return true;
+	addError("Invalid cache entry: " + key);
+	return false;
+      }
+      catch (Exception e) {
+	addError("Failed to replay cached result: " + key, e);
+	return false;
+      }
+      finally {
+	finishFilters();
+	m_OutputListeners.clear();
+      }
+    }
+
+    // launch and store
+    try {
+      m_Capture = cache.newResult(key);
+    }
+    catch (Exception e) {
+      println("Failed to create cache entry, launching without cache: " + key, e);
+      return launch(builder);
+    }
+    m_Destroyed = false;
+    try {
+      result = launch(builder);
+      if (result && !m_Terminated && !m_Destroyed && (getExitCode() == 0)) {
+	try {
+	  cache.store(key, getExitCode(), m_Capture);
+	}
+	catch (Exception e) {
+	  println("Failed to store result in cache: " + key, e);
+	}
+      }
+    }
+    finally {
+      m_Capture.discard();
+      m_Capture = null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether the result of the last launch got replayed from the
+   * cache rather than launching the process.
+   *
+   * @return		true if replayed
+   */
+  public boolean isCached() {
+    return (m_CachedExitCode != null);
+  }
+
+  /**
+   * Returns the exit code of the last process that was launched (or
+   * replayed from the cache).
+   *
+   * @return		the exit code, -1 if no process launched
+   */
+  public int getExitCode() {
+    if (m_CachedExitCode != null)
+      return m_CachedExitCode;
+    if (m_Output == null)
+      return -1;
+    return m_Output.getExitCode();
+  }
+
+  /**
+   * Signals the filters that the process has finished and outputs any
+   * output that they still buffered.
+   */
+  protected synchronized void finishFilters() {
+    m_FilterChain.finish((String line, boolean stdout) -> println(line, stdout));
+  }
+
   /**
    * Destroys the process if possible.
    */
   public void destroy() {
+    m_Destroyed = true;
     if (m_Output != null)
       m_Output.destroy();
   }
@@ -85,7 +85,9 @@ public interface Command
   public Environment getEnv();
 
   /**
-   * Returns the parser to use for the arguments.
+   * Returns the parser to use for the arguments. Creates a new parser
+   * every time, use {@link CommandUtils#getParser(Command)} for the shared
+   * instance.
    *
    * @return		the parser, null if no arguments to parse
    */
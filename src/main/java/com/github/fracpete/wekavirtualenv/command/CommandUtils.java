@@ -20,10 +20,16 @@
 
 package com.github.fracpete.wekavirtualenv.command;
 
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.wekavirtualenv.command.filter.Filter;
 import nz.ac.waikato.cms.jenericcmdline.core.OptionUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Utilities for commands.
@@ -32,6 +38,12 @@ import java.util.List;
  */
 public class CommandUtils {
 
+  /** the characters with special meaning in regular expressions. */
+  public final static String REGEXP_METACHARS = "\\^$.|?*+()[]{}";
+
+  /** the parsers per class, one set per thread as parsing is not thread-safe. */
+  protected final static ThreadLocal<Map<Class,ArgumentParser>> PARSERS = ThreadLocal.withInitial(HashMap::new);
+
   /**
    * Removes any empty strings from the array.
    *
@@ -84,4 +96,145 @@ public class CommandUtils {
       new String[]{"\\n" , "\\t", "\\r"},
       new char[]{'\n', '\t', '\r'});
   }
+
+  /**
+   * Checks whether the regular expression consists only of literal characters,
+   * i.e., does not contain any meta-characters.
+   *
+   * @param regexp	the regular expression to check
+   * @return		true if a plain string
+   */
+  public static boolean isLiteral(String regexp) {
+    int		i;
+
+    if (regexp.isEmpty())
+      return false;
+
+    for (i = 0; i < regexp.length(); i++) {
+      if (REGEXP_METACHARS.indexOf(regexp.charAt(i)) > -1)
+	return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Replaces the literal string using {@link String#indexOf(String, int)}
+   * rather than regular expressions.
+   *
+   * @param s		the string to process
+   * @param find	the string to find, must not be empty
+   * @param replace	the replacement
+   * @param all		whether to replace all occurrences or just the first
+   * @return		the processed string
+   */
+  public static String replaceLiteral(String s, String find, String replace, boolean all) {
+    StringBuilder	result;
+    int			start;
+    int			pos;
+
+    pos = s.indexOf(find);
+    if (pos == -1)
+      return s;
+
+    result = new StringBuilder(s.length() + Math.max(0, replace.length() - find.length()) * 4);
+    start  = 0;
+    while (pos > -1) {
+      result.append(s, start, pos);
+      result.append(replace);
+      start = pos + find.length();
+      if (!all)
+	break;
+      pos = s.indexOf(find, start);
+    }
+    result.append(s, start, s.length());
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the parser for the class, creating it if necessary. As the
+   * parser cannot be reset once help got requested, such a parser gets
+   * replaced with a new one.
+   *
+   * @param cls		the class to get the parser for
+   * @param factory	for creating the parser
+   * @return		the parser, null if none available
+   */
+  protected static ArgumentParser getParser(Class cls, Supplier<ArgumentParser> factory) {
+    Map<Class,ArgumentParser>	parsers;
+    ArgumentParser		parser;
+
+    parsers = PARSERS.get();
+    parser  = parsers.get(cls);
+    if (!parsers.containsKey(cls) || ((parser != null) && parser.getHelpRequested()))
+      parsers.put(cls, factory.get());
+
+    return parsers.get(cls);
+  }
+
+  /**
+   * Returns the parser for the command. Parsers get created only once per
+   * command class (and thread) and then re-used.
+   *
+   * @param cmd		the command to get the parser for
+   * @return		the parser, null if no arguments to parse
+   */
+  public static ArgumentParser getParser(Command cmd) {
+    return getParser(cmd.getClass(), cmd::getParser);
+  }
+
+  /**
+   * Returns the parser for the filter. Parsers get created only once per
+   * filter class (and thread) and then re-used.
+   *
+   * @param filter	the filter to get the parser for
+   * @return		the parser
+   */
+  public static ArgumentParser getParser(Filter filter) {
+    return getParser(filter.getClass(), filter::getParser);
+  }
+
+  /**
+   * Checks whether any of the listeners takes over the console output.
+   *
+   * @param listeners	the listeners to check
+   * @return		true if console output is handled by a listener
+   * @see		ConsoleOutputListener
+   */
+  public static boolean isConsoleRedirected(Collection<OutputListener> listeners) {
+    for (OutputListener l: listeners) {
+      if (l instanceof ConsoleOutputListener)
+	return true;
+    }
+    return false;
+  }
+
+  /**
+   * Parses the size, allowing k/m/g suffixes.
+   *
+   * @param size	the size to parse
+   * @return		the parsed size
+   * @throws NumberFormatException	if invalid format
+   */
+  public static long parseSize(String size) {
+    long	factor;
+    char	unit;
+
+    size   = size.trim().toLowerCase();
+    factor = 1;
+    if (!size.isEmpty()) {
+      unit = size.charAt(size.length() - 1);
+      if (unit == 'k')
+	factor = 1024L;
+      else if (unit == 'm')
+	factor = 1024L * 1024L;
+      else if (unit == 'g')
+	factor = 1024L * 1024L * 1024L;
+      if (factor > 1)
+	size = size.substring(0, size.length() - 1);
+    }
+
+    return Long.parseLong(size) * factor;
+  }
 }
@@ -0,0 +1,34 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ConsoleOutputListener.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command;
+
+/**
+ * Interface for output listeners that take over the console output: if such
+ * a listener is registered, commands no longer output on stdout/stderr
+ * themselves, leaving it to the listener (e.g., for prefixing or grouping
+ * the output of concurrent executions).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface ConsoleOutputListener
+  extends OutputListener {
+
+}
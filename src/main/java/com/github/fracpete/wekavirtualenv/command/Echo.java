@@ -110,9 +110,11 @@ public class Echo
 
     line   = CommandUtils.unbackquote(ns.getString("message"));
     stdout = !ns.getBoolean("stderr");
+    m_FilterChain.start();
     line   = m_FilterChain.intercept(line, stdout);
     if (line != null)
       println(line, stdout);
+    m_FilterChain.finish((String l, boolean s) -> println(l, s));
     return true;
   }
 }
@@ -90,7 +90,7 @@ public class FilterHelp
         println("Unknown filter: " + ns.getString("filter"), false);
         return false;
       }
-      println(f.getParser().generateHelpScreen(false), true);
+      println(CommandUtils.getParser(f).generateHelpScreen(false), true);
     }
     println("", true);
     println("Notes:", true);
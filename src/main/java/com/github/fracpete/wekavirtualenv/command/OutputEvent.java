@@ -0,0 +1,221 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OutputEvent.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Event for a single line of output. The object gets re-used by the
+ * generating object for subsequent lines to avoid allocations.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class OutputEvent
+  implements Serializable {
+
+  /** the object generating the output. */
+  protected transient Object m_Source;
+
+  /** the name of the source, e.g., the command. */
+  protected String m_SourceName;
+
+  /** the sequence number of the line. */
+  protected long m_Sequence;
+
+  /** the monotonic timestamp (see {@link System#nanoTime()}). */
+  protected long m_Timestamp;
+
+  /** whether stdout or stderr. */
+  protected boolean m_StdOut;
+
+  /** the line. */
+  protected String m_Line;
+
+  /** the buffer with the line and a trailing newline (lazily filled). */
+  protected char[] m_Buffer;
+
+  /** the number of valid characters in the buffer, -1 if not filled. */
+  protected int m_Length;
+
+  /**
+   * Initializes the event.
+   *
+   * @param source	the object generating the output
+   * @param sourceName	the name of the source
+   */
+  public OutputEvent(Object source, String sourceName) {
+    super();
+    m_Source     = source;
+    m_SourceName = sourceName;
+    m_Sequence   = -1;
+    m_Buffer     = new char[256];
+    m_Length     = -1;
+  }
+
+  /**
+   * Updates the event with the next line.
+   *
+   * @param line	the line
+   * @param stdout	whether stdout or stderr
+   */
+  public void update(String line, boolean stdout) {
+    m_Sequence++;
+    m_Timestamp = System.nanoTime();
+    m_StdOut    = stdout;
+    m_Line      = line;
+    m_Length    = -1;
+  }
+
+  /**
+   * Returns the object that generated the output.
+   *
+   * @return		the source
+   */
+  public Object getSource() {
+    return m_Source;
+  }
+
+  /**
+   * Returns the name of the source.
+   *
+   * @return		the name
+   */
+  public String getSourceName() {
+    return m_SourceName;
+  }
+
+  /**
+   * Returns the sequence number of the line (0-based).
+   *
+   * @return		the sequence number
+   */
+  public long getSequence() {
+    return m_Sequence;
+  }
+
+  /**
+   * Returns the monotonic timestamp of the line.
+   *
+   * @return		the timestamp in nano seconds
+   * @see		System#nanoTime()
+   */
+  public long getTimestamp() {
+    return m_Timestamp;
+  }
+
+  /**
+   * Returns whether the line was output on stdout or stderr.
+   *
+   * @return		true if stdout
+   */
+  public boolean isStdOut() {
+    return m_StdOut;
+  }
+
+  /**
+   * Returns the line.
+   *
+   * @return		the line
+   */
+  public String getLine() {
+    return m_Line;
+  }
+
+  /**
+   * Returns the buffer containing the line followed by a newline.
+   * Only the first {@link #getLength()} characters are valid.
+   * The buffer gets re-used, i.e., it must not be stored.
+   *
+   * @return		the buffer
+   */
+  public char[] getBuffer() {
+    int		len;
+
+    if (m_Length == -1) {
+      len = m_Line.length() + 1;
+      if (m_Buffer.length < len)
+	m_Buffer = new char[Math.max(len, m_Buffer.length * 2)];
+      m_Line.getChars(0, m_Line.length(), m_Buffer, 0);
+      m_Buffer[len - 1] = '\n';
+      m_Length = len;
+    }
+
+    return m_Buffer;
+  }
+
+  /**
+   * Returns the number of valid characters in the buffer.
+   *
+   * @return		the length
+   * @see		#getBuffer()
+   */
+  public int getLength() {
+    getBuffer();
+    return m_Length;
+  }
+
+  /**
+   * Returns a copy of the event that can be retained.
+   *
+   * @return		the copy
+   */
+  public OutputEvent copy() {
+    OutputEvent	result;
+
+    result             = new OutputEvent(m_Source, m_SourceName);
+    result.m_Sequence  = m_Sequence;
+    result.m_Timestamp = m_Timestamp;
+    result.m_StdOut    = m_StdOut;
+    result.m_Line      = m_Line;
+
+    return result;
+  }
+
+  /**
+   * Notifies the listeners, {@link OutputEventListener} instances receive
+   * the event, all others just the line.
+   *
+   * @param listeners	the listeners to notify
+   * @param event	the event to send, gets updated with the line
+   * @param line	the line of output
+   * @param stdout	whether stdout or stderr
+   */
+  public static void notifyListeners(Collection<OutputListener> listeners, OutputEvent event, String line, boolean stdout) {
+    event.update(line, stdout);
+    for (OutputListener l: listeners) {
+      if (l instanceof OutputEventListener)
+	((OutputEventListener) l).outputEventOccurred(event);
+      else
+	l.outputOccurred(line, stdout);
+    }
+  }
+
+  /**
+   * Returns a short description of the event.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return m_SourceName + "#" + m_Sequence + " [" + (m_StdOut ? "stdout" : "stderr") + "] " + m_Line;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OutputEventListener.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command;
+
+/**
+ * Interface for output listeners that want to receive structured events
+ * rather than just the text. Gets registered like any other
+ * {@link OutputListener}, but {@link #outputEventOccurred(OutputEvent)} gets
+ * called instead of {@link #outputOccurred(String, boolean)}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface OutputEventListener
+  extends OutputListener {
+
+  /**
+   * Gets called when output was produced.
+   * <br>
+   * NB: the event object gets re-used by the generating object, i.e., it
+   * must not be stored. Use {@link OutputEvent#copy()} to retain it.
+   *
+   * @param e		the event
+   */
+  public void outputEventOccurred(OutputEvent e);
+}
@@ -22,6 +22,10 @@ package com.github.fracpete.wekavirtualenv.command;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.core.Project;
+import com.github.fracpete.wekavirtualenv.core.ResultCache;
+
+import java.io.File;
 
 /**
  * Executes an arbitrary class.
@@ -74,6 +78,14 @@ public class Run
       .dest("class")
       .help("the class to execute")
       .required(true);
+    result.addOption("--cache")
+      .dest("cache")
+      .help("whether to replay the output and exit code of an identical, earlier execution (same environment, options and file contents) from the cache rather than launching the class again")
+      .argument(false);
+    result.addOption("--cache-size")
+      .dest("cachesize")
+      .help("the maximum size of the cache (k/m/g suffixes allowed), least recently used results get removed")
+      .setDefault("1g");
 
     return result;
   }
@@ -86,6 +98,19 @@ public class Run
    * @return		true if successful
    */
   protected boolean doExecute(Namespace ns, String[] options) {
-    return launch(build(ns.getString("class"), options));
+    long	size;
+
+    if (!ns.getBoolean("cache"))
+      return launch(build(ns.getString("class"), options));
+
+    try {
+      size = CommandUtils.parseSize(ns.getString("cachesize"));
+    }
+    catch (Exception e) {
+      addError("Invalid cache size: " + ns.getString("cachesize"), e);
+      return false;
+    }
+
+    return launch(build(ns.getString("class"), options), new ResultCache(new File(Project.getCacheDir()), size));
   }
 }
@@ -22,13 +22,19 @@ package com.github.fracpete.wekavirtualenv.command;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.script.Jobs;
 import com.github.fracpete.wekavirtualenv.command.script.Variables;
 import com.github.fracpete.wekavirtualenv.command.script.VariablesHandler;
 import com.github.fracpete.wekavirtualenv.command.script.instructions.Block;
 import com.github.fracpete.wekavirtualenv.command.script.instructions.Engine;
 import com.github.fracpete.wekavirtualenv.command.script.instructions.EngineContext;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.IncrementalState;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Planner;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Profiler;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.TimingHistory;
 import com.github.fracpete.wekavirtualenv.core.Destroyable;
 import com.github.fracpete.wekavirtualenv.core.InvalidIndentationException;
+import com.github.fracpete.wekavirtualenv.core.Project;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -52,6 +58,21 @@ public class Script
   /** the engine for executing the commands. */
   protected Engine m_Engine;
 
+  /** the jobs running in the background. */
+  protected Jobs m_Jobs;
+
+  /** the state for incremental execution, null if not incremental. */
+  protected IncrementalState m_IncrementalState;
+
+  /** the profiler, null if not profiling. */
+  protected Profiler m_Profiler;
+
+  /** the timings of launched commands. */
+  protected TimingHistory m_TimingHistory;
+
+  /** the script file being executed. */
+  protected File m_ScriptFile;
+
   /**
    * Initializes the members.
    */
@@ -95,6 +116,31 @@ public class Script
       .dest("file")
       .help("the script file to execute")
       .required(true);
+    result.addOption("--incremental")
+      .dest("incremental")
+      .help("whether to skip instructions that are up-to-date, i.e., the outputs that they declare with '"
+	+ IncrementalState.OUTPUTS + "' are newer than the inputs declared with '" + IncrementalState.INPUTS
+	+ "' and the command line hasn't changed")
+      .argument(false);
+    result.addOption("--state")
+      .dest("state")
+      .help("the file for storing the state of incremental execution, default is '.<script>.state' next to the script");
+    result.addOption("--plan")
+      .dest("plan")
+      .help("performs a dry-run, outputting the number of processes that would get launched per environment "
+	+ "and the runtime estimated from previous executions, rather than executing the script")
+      .argument(false);
+    result.addOption("--profile")
+      .dest("profile")
+      .help("whether to record invocation counts and timings for each instruction and output a report (sorted by total time) at the end")
+      .argument(false);
+    result.addOption("--profile-format")
+      .dest("profileformat")
+      .help("the format of the profiling report: " + Profiler.FORMAT_TEXT + "|" + Profiler.FORMAT_JSON)
+      .setDefault(Profiler.FORMAT_TEXT);
+    result.addOption("--profile-output")
+      .dest("profileoutput")
+      .help("the file to write the profiling report to rather than outputting it on stderr");
     result.addOption("--verbose")
       .dest("verbose")
       .help("in verbose mode, commands to be executed are output on stderr")
@@ -124,6 +170,10 @@ public class Script
     File 		scriptfile;
     List<String>	cmds;
     Block		instructions;
+    boolean		result;
+    String		format;
+    Planner		planner;
+    long		estimate;
 
     scriptfile = new File(ns.getString("file"));
     if (!scriptfile.exists()) {
@@ -143,29 +193,158 @@ public class Script
       return false;
     }
 
-    m_Verbose = ns.getBoolean("verbose");
-    m_Variables = new Variables();
+    m_ScriptFile = scriptfile.getAbsoluteFile();
+    m_Verbose    = ns.getBoolean("verbose");
+    m_Variables  = new Variables();
+    m_Jobs      = new Jobs();
+
+    format = ns.getString("profileformat");
+    if (!format.equals(Profiler.FORMAT_TEXT) && !format.equals(Profiler.FORMAT_JSON)) {
+      addError("Unsupported profile format: " + format);
+      return false;
+    }
+
+    m_IncrementalState = null;
+    if (ns.getBoolean("incremental")) {
+      if (ns.getString("state") != null)
+	m_IncrementalState = new IncrementalState(new File(ns.getString("state")));
+      else
+	m_IncrementalState = new IncrementalState(IncrementalState.getDefaultFile(scriptfile));
+      try {
+	m_IncrementalState.load();
+      }
+      catch (Exception e) {
+	addError("Failed to load incremental state: " + m_IncrementalState.getFile(), e);
+	return false;
+      }
+    }
+
+    m_TimingHistory = new TimingHistory(new File(Project.getTimingsFile()));
+    try {
+      m_TimingHistory.load();
+    }
+    catch (Exception e) {
+      println("Failed to load timings: " + m_TimingHistory.getFile(), e);
+    }
 
     try {
       instructions = Block.parse(cmds);
-      m_Engine = new Engine(this, instructions, m_Verbose, m_OutputListeners);
-      return m_Engine.execute();
+      if (ns.getBoolean("plan")) {
+	m_Profiler = null;
+	planner    = new Planner(m_TimingHistory, m_Verbose);
+	estimate   = planner.plan(instructions, this);
+	if (estimate == -1)
+	  return false;
+	println(planner.report(estimate), true);
+	return true;
+      }
+      m_Profiler   = ns.getBoolean("profile") ? new Profiler(instructions) : null;
+      m_Engine     = new Engine(this, instructions, m_Verbose, m_OutputListeners);
+      result       = m_Engine.execute();
+      // don't leave any jobs behind
+      m_Jobs.waitForAll();
+      return result;
     }
     catch (InvalidIndentationException e) {
       addError("Failed to parse instructions!", e);
       return false;
     }
+    catch (InterruptedException e) {
+      addError("Interrupted while waiting for jobs to finish!", e);
+      return false;
+    }
     finally {
+      if (m_IncrementalState != null) {
+	try {
+	  m_IncrementalState.save();
+	}
+	catch (Exception e) {
+	  addError("Failed to save incremental state: " + m_IncrementalState.getFile(), e);
+	}
+      }
+      if (m_Profiler != null) {
+	if (ns.getString("profileoutput") == null) {
+	  println(m_Profiler.toString(format), false);
+	}
+	else {
+	  try {
+	    Files.write(new File(ns.getString("profileoutput")).toPath(), m_Profiler.toString(format).getBytes());
+	  }
+	  catch (Exception e) {
+	    addError("Failed to write profiling report: " + ns.getString("profileoutput"), e);
+	  }
+	}
+      }
+      try {
+	m_TimingHistory.save();
+      }
+      catch (Exception e) {
+	println("Failed to save timings: " + m_TimingHistory.getFile(), e);
+      }
       m_OutputListeners.clear();
       m_Engine = null;
     }
   }
 
+  /**
+   * Returns the jobs running in the background.
+   *
+   * @return		the jobs
+   */
+  @Override
+  public Jobs getJobs() {
+    return m_Jobs;
+  }
+
+  /**
+   * Returns the state for incremental execution.
+   *
+   * @return		the state, null if not executing incrementally
+   */
+  @Override
+  public IncrementalState getIncrementalState() {
+    return m_IncrementalState;
+  }
+
+  /**
+   * Returns the profiler.
+   *
+   * @return		the profiler, null if not profiling
+   */
+  @Override
+  public Profiler getProfiler() {
+    return m_Profiler;
+  }
+
+  /**
+   * Returns the timings of launched commands.
+   *
+   * @return		the timings
+   */
+  @Override
+  public TimingHistory getTimingHistory() {
+    return m_TimingHistory;
+  }
+
+  /**
+   * Returns whether the script file is currently being executed, i.e., is
+   * the script itself or included by it (directly or indirectly).
+   *
+   * @param path	the absolute path of the script file
+   * @return		true if being executed
+   */
+  @Override
+  public boolean isIncluding(String path) {
+    return (m_ScriptFile != null) && m_ScriptFile.getAbsolutePath().equals(path);
+  }
+
   /**
    * Destroys the process if possible.
    */
   public void destroy() {
     if (m_Engine != null)
       m_Engine.destroy();
+    if (m_Jobs != null)
+      m_Jobs.destroy();
   }
 }
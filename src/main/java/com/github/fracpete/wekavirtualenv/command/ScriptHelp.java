@@ -90,7 +90,7 @@ public class ScriptHelp
         println("Unknown script command: " + ns.getString("cmd"), false);
         return false;
       }
-      println(cmd.getParser().generateHelpScreen(false), true);
+      println(CommandUtils.getParser(cmd).generateHelpScreen(false), true);
     }
     println("", true);
     println("Notes:", true);
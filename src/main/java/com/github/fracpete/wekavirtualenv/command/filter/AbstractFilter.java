@@ -24,12 +24,15 @@ import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
 import com.github.fracpete.wekavirtualenv.command.CommandUtils;
 import com.github.fracpete.wekavirtualenv.command.Help;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
 import nz.ac.waikato.cms.core.Utils;
 import nz.ac.waikato.cms.locator.ClassLocator;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Ancestor for filters.
@@ -39,6 +42,9 @@ import java.util.List;
 public abstract class AbstractFilter
   implements Filter {
 
+  /** the filter classes, indexed by name (lazily initialized). */
+  protected static Map<String,Class> m_FilterClasses;
+
   /** for storing any errors. */
   protected StringBuilder m_Errors;
 
@@ -72,12 +78,12 @@ public abstract class AbstractFilter
     }
 
     result.append(getName()
-      + (getParser() != null ? " <options>" : "") + "\n");
+      + (CommandUtils.getParser(this) != null ? " <options>" : "") + "\n");
 
     for (String line: getHelp().split("\n"))
       result.append("\t").append(line).append("\n");
 
-    parser = getParser();
+    parser = CommandUtils.getParser(this);
     if (outputParser && (parser != null)) {
       result.append("\n");
       result.append(parser.generateHelpScreen(false, false, false, true));
@@ -163,6 +169,24 @@ public abstract class AbstractFilter
     return true;
   }
 
+  /**
+   * Gets called before the process starts generating output.
+   * <br>
+   * Default implementation does nothing.
+   */
+  public void start() {
+  }
+
+  /**
+   * Gets called once the process has finished generating output.
+   * <br>
+   * Default implementation does nothing.
+   *
+   * @param output	for forwarding any buffered output
+   */
+  public void finish(OutputListener output) {
+  }
+
   /**
    * Intercepts the process output.
    *
@@ -218,12 +242,7 @@ public abstract class AbstractFilter
   public static boolean configure(FilterSetup setup) {
     Namespace 	ns;
 
-    for (Filter f : getFilters()) {
-      if (f.getName().equals(setup.options[0])) {
-	setup.filter = f;
-	break;
-      }
-    }
+    setup.filter = getFilter(setup.options[0]);
     if (setup.filter == null) {
       System.err.println("Unknown filter: " + setup.options[0]);
       new Help().execute(new String[0]);
@@ -235,7 +254,8 @@ public abstract class AbstractFilter
     setup.options = CommandUtils.compress(setup.options);
 
     try {
-      ns = setup.filter.getParser().parseArgs(setup.options, true);
+      ns = CommandUtils.getParser(setup.filter).parseArgs(setup.options, true);
+      setup.namespace = ns;
       return setup.filter.initialize(ns);
     }
     catch (Exception e) {
@@ -275,6 +295,24 @@ public abstract class AbstractFilter
     return result;
   }
 
+  /**
+   * Returns the filter classes, indexed by their name.
+   *
+   * @return		the classes
+   */
+  public static synchronized Map<String,Class> getFilterClasses() {
+    Map<String,Class>	result;
+
+    if (m_FilterClasses == null) {
+      result = new HashMap<>();
+      for (Filter filter: getFilters())
+	result.putIfAbsent(filter.getName(), filter.getClass());
+      m_FilterClasses = result;
+    }
+
+    return m_FilterClasses;
+  }
+
   /**
    * Returns the filter associated with the filter name.
    *
@@ -282,16 +320,17 @@ public abstract class AbstractFilter
    * @return		the filter, null if not available
    */
   public static Filter getFilter(String name) {
-    Filter		result;
+    Class	cls;
 
-    result = null;
-    for (Filter cmd: getFilters()) {
-      if (cmd.getName().equals(name)) {
-        result = cmd;
-        break;
-      }
-    }
+    cls = getFilterClasses().get(name);
+    if (cls == null)
+      return null;
 
-    return result;
+    try {
+      return (Filter) cls.newInstance();
+    }
+    catch (Exception e) {
+      return null;
+    }
   }
 }
@@ -0,0 +1,350 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Branch.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.filter;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
+import nz.ac.waikato.cms.jenericcmdline.core.OptionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the output to several sub-chains of filters (fan-out), each processed
+ * by its own background thread with a bounded queue. By default, lines get
+ * dropped (and counted) for a branch whose queue is full, so that a slow
+ * branch does not stall the output. The output itself is
+ * passed on unchanged, i.e., the branches act as sinks (e.g., for tee-ing
+ * off filtered output to files). Any output that the filters of a branch
+ * release when the process finishes gets forwarded, though.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Branch
+  extends AbstractFilter {
+
+  /**
+   * Container for a line of output.
+   */
+  protected static class Entry {
+
+    /** the line. */
+    public String line;
+
+    /** whether stdout or stderr. */
+    public boolean stdout;
+
+    /**
+     * Initializes the container.
+     *
+     * @param line	the line
+     * @param stdout	whether stdout or stderr
+     */
+    public Entry(String line, boolean stdout) {
+      this.line   = line;
+      this.stdout = stdout;
+    }
+  }
+
+  /** the marker for the end of the output. */
+  protected final static Entry END_OF_OUTPUT = new Entry(null, true);
+
+  /** the number of seconds to wait for a branch to accept the end of the output. */
+  public final static int FINISH_TIMEOUT = 60;
+
+  /** the filter chains of the branches. */
+  protected List<FilterChain> m_Chains;
+
+  /** the queue size. */
+  protected int m_QueueSize;
+
+  /** whether to wait if a queue is full rather than dropping lines. */
+  protected boolean m_Block;
+
+  /** the queues of the branches. */
+  protected transient List<BlockingQueue<Entry>> m_Queues;
+
+  /** the worker threads of the branches. */
+  protected transient List<Thread> m_Workers;
+
+  /** the number of dropped lines per branch. */
+  protected long[] m_Dropped;
+
+  /** the exceptions that stopped the processing of a branch (null if none). */
+  protected RuntimeException[] m_Failures;
+
+  /**
+   * The name of the filter (used on the filterline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "branch";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Sends the output through several independent filter chains in parallel (fan-out),\n"
+      + "passing on the output itself unchanged. Each chain is specified as a single (quoted) string,\n"
+      + "with filters separated by '|', e.g.: --chain \"grep --stdout --find --regexp Time | tee --stdout --output t.txt\"";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser, null if no arguments to parse
+   */
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = super.getParser();
+    result.addOption("--chain")
+      .dest("chain")
+      .help("the filter chain of a branch, filters separated by '|'.")
+      .multiple(true);
+    result.addOption("--queue-size")
+      .dest("queuesize")
+      .type(Type.INTEGER)
+      .help("the number of lines to buffer per branch.")
+      .setDefault(10000);
+    result.addOption("--block")
+      .dest("block")
+      .help("whether to wait for a branch if its buffer is full rather than dropping lines; "
+	+ "a slow branch will stall the output and the process.")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Parses the filter chain.
+   *
+   * @param chain	the chain to parse
+   * @return		the filter chain, null if failed to parse
+   */
+  protected FilterChain parseChain(String chain) {
+    FilterChain		result;
+    String[]		options;
+    List<String>	filterArgs;
+    FilterSetup		setup;
+    int			i;
+
+    try {
+      options = OptionUtils.splitOptions(chain);
+    }
+    catch (Exception e) {
+      addError("Failed to split filter chain: " + chain, e);
+      return null;
+    }
+
+    result     = new FilterChain();
+    filterArgs = new ArrayList<>();
+    for (i = 0; i <= options.length; i++) {
+      if ((i < options.length) && !options[i].equals("|")) {
+	filterArgs.add(options[i]);
+	continue;
+      }
+      if (filterArgs.isEmpty())
+	continue;
+      setup         = new FilterSetup();
+      setup.options = filterArgs.toArray(new String[filterArgs.size()]);
+      if (!AbstractFilter.configure(setup)) {
+	addError("Failed to configure filter: " + OptionUtils.joinOptions(setup.options));
+	return null;
+      }
+      result.addFilter(setup.filter);
+      filterArgs.clear();
+    }
+
+    return result;
+  }
+
+  /**
+   * Initializes the filter with the parsed options.
+   *
+   * @param ns		the parsed options
+   * @return		true if successfully parsed
+   */
+  public boolean initialize(Namespace ns) {
+    boolean		result;
+    List<String>	chains;
+    FilterChain		chain;
+
+    result = super.initialize(ns);
+
+    if (result) {
+      chains = new ArrayList<>();
+      chains.addAll(ns.getList("chain"));
+      if (chains.isEmpty()) {
+	addError("At least one filter chain must be supplied!");
+	return false;
+      }
+      m_Chains = new ArrayList<>();
+      for (String c: chains) {
+	chain = parseChain(c);
+	if (chain == null)
+	  return false;
+	m_Chains.add(chain);
+      }
+
+      m_QueueSize = ns.getInt("queuesize");
+      if (m_QueueSize < 1) {
+	addError("Queue size must be at least 1: " + m_QueueSize);
+	return false;
+      }
+      m_Block = ns.getBoolean("block");
+    }
+
+    return result;
+  }
+
+  /**
+   * Gets called before the process starts generating output.
+   * Starts the worker threads for the branches.
+   */
+  @Override
+  public void start() {
+    int		i;
+    Thread	worker;
+
+    super.start();
+
+    m_Queues  = new ArrayList<>();
+    m_Workers = new ArrayList<>();
+    m_Dropped  = new long[m_Chains.size()];
+    m_Failures = new RuntimeException[m_Chains.size()];
+    for (i = 0; i < m_Chains.size(); i++) {
+      final int index = i;
+      final FilterChain chain = m_Chains.get(i);
+      final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(m_QueueSize);
+      chain.start();
+      worker = new Thread(() -> {
+	Entry entry;
+	while (true) {
+	  try {
+	    entry = queue.take();
+	  }
+	  catch (InterruptedException e) {
+	    break;
+	  }
+	  if (entry == END_OF_OUTPUT)
+	    break;
+	  // keep draining the queue if the branch failed
+	  if (m_Failures[index] != null)
+	    continue;
+	  try {
+	    chain.intercept(entry.line, entry.stdout);
+	  }
+	  catch (RuntimeException e) {
+	    m_Failures[index] = e;
+	  }
+	}
+      }, getName() + "-" + i);
+      worker.setDaemon(true);
+      worker.start();
+      m_Queues.add(queue);
+      m_Workers.add(worker);
+    }
+  }
+
+  /**
+   * Gets called once the process has finished generating output.
+   * Waits for the branches to process all buffered lines and forwards
+   * any output released by their filters.
+   *
+   * @param output	for forwarding any buffered output
+   */
+  @Override
+  public void finish(OutputListener output) {
+    int		i;
+
+    super.finish(output);
+
+    if (m_Workers == null)
+      return;
+
+    for (i = 0; i < m_Workers.size(); i++) {
+      try {
+	if (m_Queues.get(i).offer(END_OF_OUTPUT, FINISH_TIMEOUT, TimeUnit.SECONDS))
+	  m_Workers.get(i).join();
+	else
+	  m_Workers.get(i).interrupt();
+      }
+      catch (InterruptedException e) {
+	m_Workers.get(i).interrupt();
+      }
+      if (m_Failures[i] != null)
+	output.outputOccurred(getName() + ": branch #" + (i + 1) + " failed: " + m_Failures[i], false);
+      else
+	m_Chains.get(i).finish(output);
+      if (m_Dropped[i] > 0)
+	output.outputOccurred(getName() + ": dropped " + m_Dropped[i] + " line(s) in branch #" + (i + 1), false);
+    }
+
+    m_Workers = null;
+    m_Queues  = null;
+  }
+
+  /**
+   * Intercepts the process output.
+   *
+   * @param line	the output to process
+   * @param stdout	whether stdout or stderr
+   * @return		the string to keep or null
+   */
+  @Override
+  protected String doIntercept(String line, boolean stdout) {
+    int		i;
+    Entry	entry;
+
+    if (m_Workers == null)
+      start();
+
+    entry = new Entry(line, stdout);
+    for (i = 0; i < m_Queues.size(); i++) {
+      if (m_Block) {
+	try {
+	  m_Queues.get(i).put(entry);
+	}
+	catch (InterruptedException e) {
+	  m_Dropped[i]++;
+	}
+      }
+      else {
+	if (!m_Queues.get(i).offer(entry))
+	  m_Dropped[i]++;
+      }
+    }
+
+    return line;
+  }
+}
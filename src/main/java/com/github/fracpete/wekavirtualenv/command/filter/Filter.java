@@ -22,7 +22,9 @@ package com.github.fracpete.wekavirtualenv.command.filter;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.CommandUtils;
 import com.github.fracpete.wekavirtualenv.command.ErrorHandler;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
 import com.github.fracpete.wekavirtualenv.command.ProcessOutputInterceptor;
 
 /**
@@ -69,7 +71,9 @@ public interface Filter
   public String getErrors();
 
   /**
-   * Returns the parser to use for the arguments.
+   * Returns the parser to use for the arguments. Creates a new parser
+   * every time, use {@link CommandUtils#getParser(Filter)} for the shared
+   * instance.
    *
    * @return		the parser, null if no arguments to parse
    */
@@ -83,6 +87,20 @@ public interface Filter
    */
   public boolean initialize(Namespace ns);
 
+  /**
+   * Gets called before the process starts generating output.
+   * Allows the filter to reset its state or acquire resources.
+   */
+  public void start();
+
+  /**
+   * Gets called once the process has finished generating output.
+   * Allows the filter to flush any buffered output and release resources.
+   *
+   * @param output	for forwarding any buffered output
+   */
+  public void finish(OutputListener output);
+
   /**
    * Simply uses the filter for comparing.
    *
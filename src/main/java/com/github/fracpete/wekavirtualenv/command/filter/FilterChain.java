@@ -20,6 +20,7 @@
 
 package com.github.fracpete.wekavirtualenv.command.filter;
 
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
 import com.github.fracpete.wekavirtualenv.command.ProcessOutputInterceptor;
 
 import java.util.ArrayList;
@@ -53,24 +54,89 @@ public class FilterChain
   }
 
   /**
-   * Intercepts the process output.
+   * Returns whether the chain contains any filters.
+   *
+   * @return		true if no filters present
+   */
+  public boolean isEmpty() {
+    return m_Filters.isEmpty();
+  }
+
+  /**
+   * Returns whether any of the filters requested the termination of the
+   * process that generates the output.
+   *
+   * @return		true if termination requested
+   * @see		TerminatingFilter
+   */
+  public boolean isTerminationRequested() {
+    for (Filter filter: m_Filters) {
+      if ((filter instanceof TerminatingFilter) && ((TerminatingFilter) filter).isTerminationRequested())
+	return true;
+    }
+    return false;
+  }
+
+  /**
+   * Signals all filters that the process is about to generate output.
+   */
+  public void start() {
+    for (Filter filter: m_Filters)
+      filter.start();
+  }
+
+  /**
+   * Signals all filters that the process finished generating output.
+   * Any output that a filter releases gets passed through the remainder
+   * of the chain before being forwarded to the listener.
+   *
+   * @param output	the listener to forward the remaining output to
+   */
+  public void finish(final OutputListener output) {
+    int		i;
+
+    for (i = 0; i < m_Filters.size(); i++) {
+      final int next = i + 1;
+      m_Filters.get(i).finish((String line, boolean stdout) -> {
+	String result = intercept(line, stdout, next);
+	if (result != null)
+	  output.outputOccurred(result, stdout);
+      });
+    }
+  }
+
+  /**
+   * Intercepts the process output, starting with the specified filter.
    *
    * @param line	the output to process
    * @param stdout	whether stdout or stderr
+   * @param from	the index of the first filter to apply
    * @return		the string to keep or null
    */
-  @Override
-  public String intercept(String line, boolean stdout) {
+  protected String intercept(String line, boolean stdout, int from) {
     String	result;
+    int		i;
 
     result = line;
 
-    for (Filter filter: m_Filters) {
-      result = filter.intercept(result, stdout);
+    for (i = from; i < m_Filters.size(); i++) {
+      result = m_Filters.get(i).intercept(result, stdout);
       if (result == null)
         break;
     }
 
     return result;
   }
+
+  /**
+   * Intercepts the process output.
+   *
+   * @param line	the output to process
+   * @param stdout	whether stdout or stderr
+   * @return		the string to keep or null
+   */
+  @Override
+  public String intercept(String line, boolean stdout) {
+    return intercept(line, stdout, 0);
+  }
 }
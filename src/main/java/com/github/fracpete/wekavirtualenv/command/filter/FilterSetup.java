@@ -20,6 +20,8 @@
 
 package com.github.fracpete.wekavirtualenv.command.filter;
 
+import com.github.fracpete.simpleargparse4j.Namespace;
+
 import java.io.Serializable;
 
 /**
@@ -33,4 +35,7 @@ public class FilterSetup
 
   /** the current command-line options. */
   public String[] options;
+
+  /** the parsed options. */
+  public Namespace namespace;
 }
@@ -22,23 +22,56 @@ package com.github.fracpete.wekavirtualenv.command.filter;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.core.AhoCorasick;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Captures matching strings similar to the unix 'grep' command.
+ * Multiple regular expressions and literal strings can be supplied, which
+ * get matched in a single pass: the literal strings via an Aho-Corasick
+ * automaton and the regular expressions via a single, combined pattern.
+ * Expressions with numeric backreferences (e.g., '\\1') get matched
+ * separately, as combining them would shift the group numbers.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class Grep
   extends AbstractFilter {
 
-  /** the pattern for matching. */
+  /** for detecting numeric backreferences (not escaped) in expressions. */
+  protected final static Pattern BACKREFERENCE = Pattern.compile("(?<!\\\\)(?:\\\\\\\\)*\\\\[1-9]");
+
+  /** the pattern for matching (combined if multiple expressions), null if none. */
   protected Pattern m_RegExp;
 
+  /** the patterns that need to be matched separately (backreferences). */
+  protected List<Pattern> m_Separate;
+
+  /** the individual patterns. */
+  protected Pattern[] m_RegExps;
+
+  /** the re-usable matcher. */
+  protected Matcher m_Matcher;
+
+  /** the automaton for the literal strings. */
+  protected AhoCorasick m_Literals;
+
+  /** the literal string if only a single one was supplied. */
+  protected String m_Literal;
+
+  /** whether to search for the expressions rather than matching the whole string. */
+  protected boolean m_Find;
+
   /** whether to invert the matching sense. */
   protected boolean m_Invert;
 
+  /** whether to prefix the output with the pattern that matched. */
+  protected boolean m_Tag;
+
   /**
    * The name of the filter (used on the filterline).
    *
@@ -56,7 +89,8 @@ public class Grep
    */
   @Override
   public String getHelp() {
-    return "For capturing strings that match a regular expression.";
+    return "For capturing strings that match regular expressions or contain literal strings.\n"
+      + "Multiple expressions/strings can be supplied, a string is kept if any of them matches.";
   }
 
   /**
@@ -71,11 +105,27 @@ public class Grep
     result.addOption("--regexp")
       .dest("regexp")
       .help("the regular expression that the output must match to be kept.")
-      .required(true);
+      .multiple(true);
+    result.addOption("--literal")
+      .dest("literal")
+      .help("the literal string that the output must contain to be kept.")
+      .multiple(true);
+    result.addOption("--find")
+      .dest("find")
+      .help("whether to search for the regular expressions within the output rather than matching the complete output (avoids having to use '.*' at start/end).")
+      .argument(false);
+    result.addOption("--fixed")
+      .dest("fixed")
+      .help("whether to treat the regular expressions as literal strings, i.e., searching for them like --literal.")
+      .argument(false);
     result.addOption("--invert")
       .dest("invert")
       .help("whether to invert the matching sense.")
       .argument(false);
+    result.addOption("--tag")
+      .dest("tag")
+      .help("whether to prefix kept output with the expression/string that matched, e.g., '[Time taken] ...'.")
+      .argument(false);
 
     return result;
   }
@@ -87,25 +137,156 @@ public class Grep
    * @return		true if successfully parsed
    */
   public boolean initialize(Namespace ns) {
-    boolean	result;
+    boolean		result;
+    List<String>	regexps;
+    List<String>	literals;
+    StringBuilder	combined;
+    int			i;
 
     result = super.initialize(ns);
 
     if (result) {
-      try {
-	m_RegExp = Pattern.compile(ns.getString("regexp"));
+      regexps  = new ArrayList<>();
+      regexps.addAll(ns.getList("regexp"));
+      literals = new ArrayList<>();
+      literals.addAll(ns.getList("literal"));
+      if (ns.getBoolean("fixed")) {
+	literals.addAll(regexps);
+	regexps.clear();
       }
-      catch (Exception e) {
-        addError("Invalid regular expression: " + ns.getString("regexp"), e);
+      m_Find = ns.getBoolean("find");
+      if (regexps.isEmpty() && literals.isEmpty()) {
+        addError("At least one regular expression or literal string must be supplied!");
         return false;
       }
 
+      m_RegExp   = null;
+      m_RegExps  = null;
+      m_Separate = new ArrayList<>();
+      m_Matcher  = null;
+      if (!regexps.isEmpty()) {
+	m_RegExps = new Pattern[regexps.size()];
+	combined  = new StringBuilder();
+	for (i = 0; i < regexps.size(); i++) {
+	  try {
+	    m_RegExps[i] = Pattern.compile(regexps.get(i));
+	  }
+	  catch (Exception e) {
+	    addError("Invalid regular expression: " + regexps.get(i), e);
+	    return false;
+	  }
+	  if (hasBackreference(regexps.get(i))) {
+	    m_Separate.add(m_RegExps[i]);
+	    continue;
+	  }
+	  if (combined.length() > 0)
+	    combined.append("|");
+	  combined.append("(?:").append(regexps.get(i)).append(")");
+	}
+	if (m_RegExps.length == 1) {
+	  m_RegExp = m_RegExps[0];
+	  m_Separate.clear();
+	}
+	else if (combined.length() > 0) {
+	  try {
+	    m_RegExp = Pattern.compile(combined.toString());
+	  }
+	  catch (Exception e) {
+	    // e.g., same group name used in several expressions
+	    m_Separate.clear();
+	    for (Pattern regexp: m_RegExps)
+	      m_Separate.add(regexp);
+	  }
+	}
+      }
+
+      m_Literals = null;
+      m_Literal  = null;
+      if (!literals.isEmpty()) {
+	for (String literal: literals) {
+	  if (literal.isEmpty()) {
+	    addError("Literal strings cannot be empty!");
+	    return false;
+	  }
+	}
+	if (literals.size() == 1)
+	  m_Literal = literals.get(0);
+	else
+	  m_Literals = new AhoCorasick(literals.toArray(new String[literals.size()]));
+      }
+
       m_Invert = ns.getBoolean("invert");
+      m_Tag    = ns.getBoolean("tag");
     }
 
     return result;
   }
 
+  /**
+   * Checks whether the expression contains numeric backreferences.
+   *
+   * @param regexp	the expression to check
+   * @return		true if backreferences present
+   */
+  protected static boolean hasBackreference(String regexp) {
+    return BACKREFERENCE.matcher(regexp).find();
+  }
+
+  /**
+   * Applies the matcher, either searching or matching the complete string.
+   *
+   * @param matcher	the matcher to apply
+   * @return		true if a match
+   */
+  protected boolean matches(Matcher matcher) {
+    if (m_Find)
+      return matcher.find();
+    else
+      return matcher.matches();
+  }
+
+  /**
+   * Determines the expression/string that matches the line.
+   *
+   * @param line	the line to check
+   * @return		the expression/string that matched, null if none
+   */
+  protected String match(String line) {
+    int		index;
+
+    if (m_Literal != null) {
+      if (line.contains(m_Literal))
+	return m_Literal;
+    }
+    else if (m_Literals != null) {
+      index = m_Literals.find(line);
+      if (index > -1)
+	return m_Literals.getPatterns()[index];
+    }
+
+    if (m_RegExp != null) {
+      if (m_Matcher == null)
+	m_Matcher = m_RegExp.matcher(line);
+      else
+	m_Matcher.reset(line);
+      if (matches(m_Matcher)) {
+	if (!m_Tag || (m_RegExps.length == 1))
+	  return m_RegExps[0].pattern();
+	for (Pattern regexp: m_RegExps) {
+	  if (matches(regexp.matcher(line)))
+	    return regexp.pattern();
+	}
+      }
+    }
+
+    for (Pattern regexp: m_Separate) {
+      if (matches(regexp.matcher(line)))
+	return regexp.pattern();
+    }
+
+    return null;
+  }
+
   /**
    * Intercepts the process output.
    *
@@ -115,10 +296,15 @@ public class Grep
    */
   @Override
   protected String doIntercept(String line, boolean stdout) {
-    if ((!m_Invert && m_RegExp.matcher(line).matches())
-      || (m_Invert && !m_RegExp.matcher(line).matches())) {
-      return line;
-    }
-    return null;
+    String	match;
+
+    match = match(line);
+    if (m_Invert)
+      return (match == null) ? line : null;
+    if (match == null)
+      return null;
+    if (m_Tag)
+      return "[" + match + "] " + line;
+    return line;
   }
 }
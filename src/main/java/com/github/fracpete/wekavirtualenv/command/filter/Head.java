@@ -0,0 +1,143 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Head.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.filter;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+
+/**
+ * Keeps only the first N lines, similar to the unix 'head' command.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Head
+  extends AbstractFilter
+  implements TerminatingFilter {
+
+  /** the number of lines to keep. */
+  protected int m_NumLines;
+
+  /** whether to stop the process once the lines have been output. */
+  protected boolean m_Kill;
+
+  /** the number of lines seen so far. */
+  protected int m_Count;
+
+  /**
+   * The name of the filter (used on the filterline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "head";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Keeps only the first N lines, discarding the remainder.\n"
+      + "Can stop the process once the lines have been output.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser, null if no arguments to parse
+   */
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = super.getParser();
+    result.addOption("--n")
+      .dest("n")
+      .type(Type.INTEGER)
+      .help("the number of lines to keep.")
+      .setDefault(10);
+    result.addOption("--kill")
+      .dest("kill")
+      .help("whether to stop the process once the lines have been output.")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Initializes the filter with the parsed options.
+   *
+   * @param ns		the parsed options
+   * @return		true if successfully parsed
+   */
+  public boolean initialize(Namespace ns) {
+    boolean	result;
+
+    result = super.initialize(ns);
+
+    if (result) {
+      m_NumLines = ns.getInt("n");
+      if (m_NumLines < 0) {
+	addError("Number of lines cannot be negative: " + m_NumLines);
+	return false;
+      }
+      m_Kill = ns.getBoolean("kill");
+    }
+
+    return result;
+  }
+
+  /**
+   * Gets called before the process starts generating output.
+   */
+  @Override
+  public void start() {
+    super.start();
+    m_Count = 0;
+  }
+
+  /**
+   * Returns whether the process generating the output can be stopped.
+   *
+   * @return		true if no more output required
+   */
+  public boolean isTerminationRequested() {
+    return m_Kill && (m_Count >= m_NumLines);
+  }
+
+  /**
+   * Intercepts the process output.
+   *
+   * @param line	the output to process
+   * @param stdout	whether stdout or stderr
+   * @return		the string to keep or null
+   */
+  @Override
+  protected String doIntercept(String line, boolean stdout) {
+    if (m_Count >= m_NumLines)
+      return null;
+    m_Count++;
+    return line;
+  }
+}
@@ -22,6 +22,10 @@ package com.github.fracpete.wekavirtualenv.command.filter;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.CommandUtils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Performs string replacement, simple or regular expression based.
@@ -43,6 +47,15 @@ public class Replace
   /** whether to replace all occurrences (regexp only). */
   protected boolean m_All;
 
+  /** whether the find string can be treated as plain string. */
+  protected boolean m_Literal;
+
+  /** the compiled pattern (regexp only). */
+  protected Pattern m_Pattern;
+
+  /** the re-usable matcher (regexp only). */
+  protected Matcher m_Matcher;
+
   /**
    * The name of the filter (used on the filterline).
    *
@@ -107,8 +120,25 @@ public class Replace
       m_Find    = ns.getString("find");
       m_Replace = ns.getString("replace");
       m_RegExp  = ns.getBoolean("regexp");
-      if (m_RegExp)
-	m_All = ns.getBoolean("all");
+      m_All     = !m_RegExp || ns.getBoolean("all");
+      m_Pattern = null;
+      m_Matcher = null;
+      if (m_RegExp) {
+	m_Literal = CommandUtils.isLiteral(m_Find)
+	  && (m_Replace.indexOf('$') == -1) && (m_Replace.indexOf('\\') == -1);
+	if (!m_Literal) {
+	  try {
+	    m_Pattern = Pattern.compile(m_Find);
+	  }
+	  catch (Exception e) {
+	    addError("Invalid regular expression: " + m_Find, e);
+	    return false;
+	  }
+	}
+      }
+      else {
+	m_Literal = !m_Find.isEmpty();
+      }
     }
 
     return result;
@@ -123,18 +153,20 @@ public class Replace
    */
   @Override
   protected String doIntercept(String line, boolean stdout) {
-    String	result;
+    if (m_Literal)
+      return CommandUtils.replaceLiteral(line, m_Find, m_Replace, m_All);
 
-    if (m_RegExp) {
-      if (m_All)
-        result = line.replaceAll(m_Find, m_Replace);
-      else
-        result = line.replaceFirst(m_Find, m_Replace);
-    }
-    else {
-      result = line.replace(m_Find, m_Replace);
-    }
+    if (!m_RegExp)
+      return line.replace(m_Find, m_Replace);
 
-    return result;
+    if (m_Matcher == null)
+      m_Matcher = m_Pattern.matcher(line);
+    else
+      m_Matcher.reset(line);
+
+    if (m_All)
+      return m_Matcher.replaceAll(m_Replace);
+    else
+      return m_Matcher.replaceFirst(m_Replace);
   }
 }
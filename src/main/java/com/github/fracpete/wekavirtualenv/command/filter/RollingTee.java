@@ -0,0 +1,527 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RollingTee.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.filter;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+import com.github.fracpete.wekavirtualenv.command.CommandUtils;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
+import nz.ac.waikato.cms.core.FileUtils;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tees off the output to a file, optionally compressed, with size/time based
+ * rolling of the output files. The output gets written by a background
+ * thread, with the process output being buffered in a bounded queue.
+ * By default, lines get dropped (and counted) if the queue is full, so that
+ * slow disk I/O does not stall the process; waiting is optional.
+ * <br>
+ * Rolled files get an index inserted before the compression extension
+ * (if any), e.g., 'out.log.gz' becomes 'out.log.1.gz'. The higher the index,
+ * the older the file.
+ * <br>
+ * An existing output file gets appended to (for compressed output as a new
+ * compressed stream) and only rolled over once it exceeds the maximum size
+ * or age. For compressed files, the compressed size of the existing file
+ * is used as its size. The time the current file was started gets stored in
+ * a hidden file next to it ('.&lt;name&gt;.opened').
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class RollingTee
+  extends AbstractFilter {
+
+  /** no compression. */
+  public final static String COMPRESSION_NONE = "none";
+
+  /** gzip compression. */
+  public final static String COMPRESSION_GZIP = "gzip";
+
+  /** bzip2 compression. */
+  public final static String COMPRESSION_BZIP2 = "bzip2";
+
+  /** zstd compression (requires zstd-jni on the classpath). */
+  public final static String COMPRESSION_ZSTD = "zstd";
+
+  /** the marker for the end of the output. */
+  protected final static String END_OF_OUTPUT = new String("");
+
+  /** the output file. */
+  protected File m_Output;
+
+  /** the compression to use. */
+  protected String m_Compression;
+
+  /** the maximum number of (uncompressed) characters per file, &lt;= 0 for unlimited. */
+  protected long m_MaxSize;
+
+  /** the maximum number of seconds per file, &lt;= 0 for unlimited. */
+  protected long m_MaxTime;
+
+  /** the maximum number of rolled files to keep, &lt;= 0 for unlimited. */
+  protected int m_MaxFiles;
+
+  /** the capacity of the queue. */
+  protected int m_QueueSize;
+
+  /** whether to wait if the queue is full rather than dropping lines. */
+  protected boolean m_Block;
+
+  /** the number of dropped lines. */
+  protected long m_Dropped;
+
+  /** the queue with the lines to write. */
+  protected transient BlockingQueue<String> m_Queue;
+
+  /** the background writer. */
+  protected transient Thread m_Worker;
+
+  /** the current writer. */
+  protected transient Writer m_Writer;
+
+  /** the number of bytes written to the current file. */
+  protected long m_Written;
+
+  /** the timestamp when the current file was opened. */
+  protected long m_Opened;
+
+  /** whether writing failed. */
+  protected volatile boolean m_Failed;
+
+  /**
+   * The name of the filter (used on the filterline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "rolling_tee";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Tees off the output to a file in the background, optionally compressed, rolling over files\n"
+      + "once they exceed the maximum size or age. Rolled files get an index inserted before the\n"
+      + "compression extension, e.g., 'out.log.gz' becomes 'out.log.1.gz'. An existing output file\n"
+      + "gets appended to.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser, null if no arguments to parse
+   */
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = super.getParser();
+    result.addOption("--output")
+      .dest("output")
+      .help("the file to store the output in.")
+      .required(true);
+    result.addOption("--compression")
+      .dest("compression")
+      .help("the compression to use: " + COMPRESSION_NONE + "|" + COMPRESSION_GZIP + "|" + COMPRESSION_BZIP2 + "|" + COMPRESSION_ZSTD
+	+ " (" + COMPRESSION_ZSTD + " requires zstd-jni on the classpath).")
+      .setDefault(COMPRESSION_GZIP);
+    result.addOption("--max-size")
+      .dest("maxsize")
+      .help("the maximum number of (uncompressed) characters per file before rolling over, supports k/m/g suffixes; 0 for unlimited.")
+      .setDefault("0");
+    result.addOption("--max-time")
+      .dest("maxtime")
+      .type(Type.LONG)
+      .help("the maximum number of seconds per file before rolling over; 0 for unlimited.")
+      .setDefault(0L);
+    result.addOption("--max-files")
+      .dest("maxfiles")
+      .type(Type.INTEGER)
+      .help("the maximum number of rolled over files to keep; 0 for unlimited.")
+      .setDefault(0);
+    result.addOption("--queue-size")
+      .dest("queuesize")
+      .type(Type.INTEGER)
+      .help("the number of lines to buffer for the background writer.")
+      .setDefault(10000);
+    result.addOption("--block")
+      .dest("block")
+      .help("whether to wait for the background writer if its buffer is full rather than dropping lines; "
+	+ "slow writing will stall the output and the process.")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Initializes the filter with the parsed options.
+   *
+   * @param ns		the parsed options
+   * @return		true if successfully parsed
+   */
+  public boolean initialize(Namespace ns) {
+    boolean	result;
+
+    result = super.initialize(ns);
+
+    if (result) {
+      m_Output = new File(ns.getString("output"));
+      if (m_Output.isDirectory()) {
+	addError("Output points to a directory: " + m_Output);
+	return false;
+      }
+
+      m_Compression = ns.getString("compression");
+      if (!m_Compression.equals(COMPRESSION_NONE) && !m_Compression.equals(COMPRESSION_GZIP)
+	&& !m_Compression.equals(COMPRESSION_BZIP2) && !m_Compression.equals(COMPRESSION_ZSTD)) {
+	addError("Unsupported compression: " + m_Compression);
+	return false;
+      }
+
+      try {
+	m_MaxSize = CommandUtils.parseSize(ns.getString("maxsize"));
+      }
+      catch (Exception e) {
+	addError("Invalid maximum size: " + ns.getString("maxsize"), e);
+	return false;
+      }
+      m_MaxTime   = ns.getLong("maxtime");
+      m_MaxFiles  = ns.getInt("maxfiles");
+      m_QueueSize = ns.getInt("queuesize");
+      if (m_QueueSize < 1) {
+	addError("Queue size must be at least 1: " + m_QueueSize);
+	return false;
+      }
+      m_Block = ns.getBoolean("block");
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the extension of the compression.
+   *
+   * @return		the extension (incl dot), empty string if none
+   */
+  protected String getCompressionExtension() {
+    String	name;
+
+    name = m_Output.getName().toLowerCase();
+    for (String ext: new String[]{".gz", ".bz2", ".zst"}) {
+      if (name.endsWith(ext))
+	return m_Output.getName().substring(m_Output.getName().length() - ext.length());
+    }
+
+    return "";
+  }
+
+  /**
+   * Returns the file for the specified index.
+   *
+   * @param index	the index, 0 for the current output file
+   * @return		the file
+   */
+  protected File getFile(int index) {
+    String	ext;
+    String	name;
+
+    if (index == 0)
+      return m_Output;
+
+    ext  = getCompressionExtension();
+    name = m_Output.getName();
+    name = name.substring(0, name.length() - ext.length()) + "." + index + ext;
+
+    return new File(m_Output.getParentFile(), name);
+  }
+
+  /**
+   * Returns the file that stores the timestamp when the current output file
+   * was started, as the file system's creation time is not reliable (on
+   * Linux, the last modified timestamp often gets reported instead).
+   *
+   * @return		the file
+   */
+  protected File getOpenedFile() {
+    return new File(m_Output.getAbsoluteFile().getParentFile(), "." + m_Output.getName() + ".opened");
+  }
+
+  /**
+   * Reads the timestamp when the current output file was started.
+   *
+   * @return		the timestamp, -1 if not available
+   */
+  protected long readOpened() {
+    File	file;
+
+    file = getOpenedFile();
+    if (!file.exists())
+      return -1;
+    try {
+      return Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+    }
+    catch (Exception e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Stores the timestamp when the current output file was started, if
+   * rolling over based on time (otherwise a stale timestamp gets removed).
+   */
+  protected void writeOpened() {
+    if (m_MaxTime <= 0) {
+      if (getOpenedFile().exists())
+	getOpenedFile().delete();
+      return;
+    }
+    try {
+      Files.write(getOpenedFile().toPath(), ("" + m_Opened).getBytes(StandardCharsets.UTF_8));
+    }
+    catch (Exception e) {
+      System.err.println("Failed to store start of output file: " + getOpenedFile() + "\n" + e);
+    }
+  }
+
+  /**
+   * Opens the output file.
+   *
+   * @param append	whether to append to an existing file
+   * @throws Exception	if opening fails
+   */
+  protected void open(boolean append) throws Exception {
+    OutputStream	out;
+
+    append = append && m_Output.exists();
+    m_Opened = -1;
+    if (append) {
+      m_Written = m_Output.length();
+      m_Opened  = readOpened();
+    }
+    else {
+      m_Written = 0;
+    }
+    if (m_Opened == -1) {
+      m_Opened = System.currentTimeMillis();
+      writeOpened();
+    }
+
+    out = new FileOutputStream(m_Output, append);
+    switch (m_Compression) {
+      case COMPRESSION_GZIP:
+	out = new GZIPOutputStream(out, 65536);
+	break;
+      case COMPRESSION_BZIP2:
+	out = new CompressorStreamFactory().createCompressorOutputStream(CompressorStreamFactory.BZIP2, out);
+	break;
+      case COMPRESSION_ZSTD:
+	out = new CompressorStreamFactory().createCompressorOutputStream(CompressorStreamFactory.ZSTANDARD, out);
+	break;
+      default:
+	// no compression
+    }
+
+    m_Writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536);
+  }
+
+  /**
+   * Closes the current output file.
+   */
+  protected void close() {
+    if (m_Writer != null) {
+      try {
+	m_Writer.close();
+      }
+      catch (Exception e) {
+	addError("Failed to close output: " + m_Output, e);
+      }
+      m_Writer = null;
+    }
+  }
+
+  /**
+   * Closes the current file, shifts the rolled files and opens a new file.
+   *
+   * @throws Exception	if rolling over fails
+   */
+  protected void roll() throws Exception {
+    int		last;
+    int		i;
+    File	file;
+
+    close();
+
+    last = 0;
+    while (getFile(last + 1).exists())
+      last++;
+
+    for (i = last; i >= 0; i--) {
+      file = getFile(i);
+      if (!file.exists())
+	continue;
+      if ((m_MaxFiles > 0) && (i + 1 > m_MaxFiles)) {
+	if (!FileUtils.delete(file))
+	  throw new IOException("Failed to delete " + file);
+      }
+      else if (!file.renameTo(getFile(i + 1))) {
+	throw new IOException("Failed to rename " + file + " to " + getFile(i + 1));
+      }
+    }
+
+    open(false);
+  }
+
+  /**
+   * Writes the line, rolling over files if necessary.
+   *
+   * @param line	the line to write
+   * @throws Exception	if writing fails
+   */
+  protected void write(String line) throws Exception {
+    if (((m_MaxSize > 0) && (m_Written > 0) && (m_Written + line.length() + 1 > m_MaxSize))
+      || ((m_MaxTime > 0) && (System.currentTimeMillis() - m_Opened >= m_MaxTime * 1000)))
+      roll();
+    m_Writer.write(line);
+    m_Writer.write('\n');
+    m_Written += line.length() + 1;
+  }
+
+  /**
+   * Gets called before the process starts generating output.
+   * Opens (or appends to) the output file and starts the background writer.
+   */
+  @Override
+  public void start() {
+    super.start();
+
+    m_Failed = false;
+    try {
+      open(true);
+    }
+    catch (Exception e) {
+      addError("Failed to open output: " + m_Output, e);
+      System.err.println(getErrors());
+      m_Failed = true;
+      return;
+    }
+
+    m_Dropped = 0;
+    m_Queue   = new ArrayBlockingQueue<>(m_QueueSize);
+    m_Worker  = new Thread(() -> {
+      String line;
+      while (true) {
+	try {
+	  line = m_Queue.take();
+	}
+	catch (InterruptedException e) {
+	  break;
+	}
+	if (line == END_OF_OUTPUT)
+	  break;
+	if (m_Failed)
+	  continue;
+	try {
+	  write(line);
+	}
+	catch (Exception e) {
+	  addError("Failed to write to output: " + m_Output, e);
+	  System.err.println(getErrors());
+	  m_Failed = true;
+	}
+      }
+      close();
+    }, getName() + "-" + m_Output.getName());
+    m_Worker.setDaemon(true);
+    m_Worker.start();
+  }
+
+  /**
+   * Gets called once the process has finished generating output.
+   * Waits for the background writer to write all buffered lines.
+   *
+   * @param output	for forwarding any buffered output
+   */
+  @Override
+  public void finish(OutputListener output) {
+    super.finish(output);
+
+    if (m_Worker == null)
+      return;
+
+    try {
+      m_Queue.put(END_OF_OUTPUT);
+      m_Worker.join();
+    }
+    catch (InterruptedException e) {
+      m_Worker.interrupt();
+    }
+    m_Worker = null;
+    m_Queue  = null;
+    if (m_Dropped > 0)
+      output.outputOccurred(getName() + ": dropped " + m_Dropped + " line(s) for " + m_Output, false);
+  }
+
+  /**
+   * Intercepts the process output.
+   *
+   * @param line	the output to process
+   * @param stdout	whether stdout or stderr
+   * @return		the string to keep or null
+   */
+  @Override
+  protected String doIntercept(String line, boolean stdout) {
+    if ((m_Worker == null) && !m_Failed)
+      start();
+    if (m_Worker != null) {
+      if (m_Block) {
+	try {
+	  m_Queue.put(line);
+	}
+	catch (InterruptedException e) {
+	  m_Dropped++;
+	}
+      }
+      else {
+	if (!m_Queue.offer(line))
+	  m_Dropped++;
+      }
+    }
+    return line;
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Sample.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.filter;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+
+/**
+ * Deterministically down-samples the output, either keeping every n-th line
+ * or a fraction of the lines (spread evenly).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Sample
+  extends AbstractFilter {
+
+  /** the interval to use (0 if using the rate). */
+  protected int m_Every;
+
+  /** the rate to use. */
+  protected double m_Rate;
+
+  /** the number of lines seen so far. */
+  protected long m_Count;
+
+  /** the accumulated rate. */
+  protected double m_Accumulated;
+
+  /**
+   * The name of the filter (used on the filterline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "sample";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Deterministically down-samples the output, keeping every n-th line or the specified fraction of lines.\n"
+      + "The first line is always kept.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser, null if no arguments to parse
+   */
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = super.getParser();
+    result.addOption("--every")
+      .dest("every")
+      .type(Type.INTEGER)
+      .help("keeps every n-th line, overrides --rate if greater than 0.")
+      .setDefault(0);
+    result.addOption("--rate")
+      .dest("rate")
+      .type(Type.DOUBLE)
+      .help("the fraction of lines to keep (0-1).")
+      .setDefault(1.0);
+
+    return result;
+  }
+
+  /**
+   * Initializes the filter with the parsed options.
+   *
+   * @param ns		the parsed options
+   * @return		true if successfully parsed
+   */
+  public boolean initialize(Namespace ns) {
+    boolean	result;
+
+    result = super.initialize(ns);
+
+    if (result) {
+      m_Every = ns.getInt("every");
+      m_Rate  = ns.getDouble("rate");
+      if (m_Every < 0) {
+	addError("Interval cannot be negative: " + m_Every);
+	return false;
+      }
+      if ((m_Rate < 0) || (m_Rate > 1)) {
+	addError("Rate must be between 0 and 1: " + m_Rate);
+	return false;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Gets called before the process starts generating output.
+   */
+  @Override
+  public void start() {
+    super.start();
+    m_Count       = 0;
+    m_Accumulated = 1.0;
+  }
+
+  /**
+   * Intercepts the process output.
+   *
+   * @param line	the output to process
+   * @param stdout	whether stdout or stderr
+   * @return		the string to keep or null
+   */
+  @Override
+  protected String doIntercept(String line, boolean stdout) {
+    boolean	keep;
+
+    if (m_Every > 0) {
+      keep = (m_Count % m_Every == 0);
+    }
+    else {
+      if (m_Count == 0)
+	m_Accumulated = 1.0;
+      keep = (m_Accumulated >= 1.0);
+      if (keep)
+	m_Accumulated -= 1.0;
+      m_Accumulated += m_Rate;
+    }
+    m_Count++;
+
+    return keep ? line : null;
+  }
+}
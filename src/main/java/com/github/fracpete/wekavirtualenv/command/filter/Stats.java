@@ -0,0 +1,443 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Stats.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.filter;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
+import nz.ac.waikato.cms.core.FileUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts Weka evaluation metrics from the output while it streams past
+ * and outputs them as a single CSV or JSON record once the process has
+ * finished. Only the metrics get stored, not the output itself.
+ * <br>
+ * If metrics occur multiple times (e.g., for training data and
+ * cross-validation), the last occurrence wins. Use --section to restrict
+ * the sections (e.g., '=== Stratified cross-validation ===') to extract
+ * the metrics from.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Stats
+  extends AbstractFilter {
+
+  /** CSV output. */
+  public final static String FORMAT_CSV = "csv";
+
+  /** JSON output. */
+  public final static String FORMAT_JSON = "json";
+
+  /** the label column. */
+  public final static String COL_LABEL = "label";
+
+  /** the columns of the record. */
+  public final static String[] COLUMNS = {
+    COL_LABEL,
+    "correct",
+    "correct_pct",
+    "incorrect",
+    "incorrect_pct",
+    "kappa",
+    "mae",
+    "rmse",
+    "rae_pct",
+    "rrse_pct",
+    "correlation",
+    "total",
+    "time_build",
+    "time_test",
+  };
+
+  /** the prefixes of the lines to extract metrics from. */
+  protected final static String[] PREFIXES = {
+    "Correctly Classified Instances",
+    "Incorrectly Classified Instances",
+    "Kappa statistic",
+    "Mean absolute error",
+    "Root mean squared error",
+    "Relative absolute error",
+    "Root relative squared error",
+    "Correlation coefficient",
+    "Total Number of Instances",
+    "Time taken to build model",
+    "Time taken to test model",
+  };
+
+  /** the columns associated with the prefixes. */
+  protected final static String[] KEYS = {
+    "correct",
+    "incorrect",
+    "kappa",
+    "mae",
+    "rmse",
+    "rae_pct",
+    "rrse_pct",
+    "correlation",
+    "total",
+    "time_build",
+    "time_test",
+  };
+
+  /** the start of a section header. */
+  public final static String SECTION = "===";
+
+  /** the output format. */
+  protected String m_Format;
+
+  /** the label for the record. */
+  protected String m_Label;
+
+  /** the file to append the records to, null if none. */
+  protected File m_Output;
+
+  /** whether to suppress the original output. */
+  protected boolean m_Suppress;
+
+  /** the pattern for the sections to use, null for all. */
+  protected Pattern m_Section;
+
+  /** whether the current section is used. */
+  protected boolean m_InSection;
+
+  /** the extracted metrics. */
+  protected Map<String,String> m_Metrics;
+
+  /**
+   * The name of the filter (used on the filterline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "stats";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Extracts Weka evaluation metrics (accuracy, errors, timings, etc) from the output\n"
+      + "and outputs them as a single CSV or JSON record once the process has finished.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser, null if no arguments to parse
+   */
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = super.getParser();
+    result.addOption("--format")
+      .dest("format")
+      .help("the format of the record: " + FORMAT_CSV + "|" + FORMAT_JSON)
+      .setDefault(FORMAT_CSV);
+    result.addOption("--label")
+      .dest("label")
+      .help("the label to store with the record, e.g., the dataset.")
+      .setDefault("");
+    result.addOption("--section")
+      .dest("section")
+      .help("the regular expression that section headers ('=== ... ===') must contain for metrics to be extracted.")
+      .setDefault("");
+    result.addOption("--output")
+      .dest("output")
+      .help("the file to append the record to rather than outputting it.")
+      .setDefault("");
+    result.addOption("--suppress")
+      .dest("suppress")
+      .help("whether to suppress the original output.")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Initializes the filter with the parsed options.
+   *
+   * @param ns		the parsed options
+   * @return		true if successfully parsed
+   */
+  public boolean initialize(Namespace ns) {
+    boolean	result;
+
+    result = super.initialize(ns);
+
+    if (result) {
+      m_Format = ns.getString("format");
+      if (!m_Format.equals(FORMAT_CSV) && !m_Format.equals(FORMAT_JSON)) {
+	addError("Unsupported format: " + m_Format);
+	return false;
+      }
+
+      m_Label = ns.getString("label");
+
+      m_Section = null;
+      if (!ns.getString("section").isEmpty()) {
+	try {
+	  m_Section = Pattern.compile(ns.getString("section"));
+	}
+	catch (Exception e) {
+	  addError("Invalid regular expression: " + ns.getString("section"), e);
+	  return false;
+	}
+      }
+
+      m_Output = null;
+      if (!ns.getString("output").isEmpty()) {
+	m_Output = new File(ns.getString("output"));
+	if (m_Output.isDirectory()) {
+	  addError("Output points to a directory: " + m_Output);
+	  return false;
+	}
+      }
+
+      m_Suppress = ns.getBoolean("suppress");
+    }
+
+    return result;
+  }
+
+  /**
+   * Gets called before the process starts generating output.
+   */
+  @Override
+  public void start() {
+    super.start();
+    m_Metrics   = new HashMap<>();
+    m_InSection = (m_Section == null);
+  }
+
+  /**
+   * Returns the first two numeric tokens from the string.
+   *
+   * @param s		the string to search
+   * @param from	the position to start from
+   * @return		the tokens, null elements if not found
+   */
+  protected static String[] numbers(String s, int from) {
+    String[]	result;
+    String[]	tokens;
+    int		count;
+
+    result = new String[2];
+    count  = 0;
+    tokens = s.substring(from).trim().split("\\s+");
+    for (String token: tokens) {
+      if (token.endsWith(":"))
+	token = token.substring(0, token.length() - 1);
+      try {
+	Double.parseDouble(token);
+	result[count++] = token;
+	if (count == result.length)
+	  break;
+      }
+      catch (Exception e) {
+	// ignored
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Extracts any metrics from the line.
+   *
+   * @param line	the line to process
+   */
+  protected void extract(String line) {
+    String	trimmed;
+    String[]	values;
+    int		i;
+    int		from;
+
+    trimmed = line.trim();
+    if (trimmed.isEmpty())
+      return;
+
+    if (trimmed.startsWith(SECTION)) {
+      m_InSection = (m_Section == null) || m_Section.matcher(trimmed).find();
+      return;
+    }
+    if (!m_InSection)
+      return;
+
+    for (i = 0; i < PREFIXES.length; i++) {
+      if (!trimmed.startsWith(PREFIXES[i]))
+	continue;
+      from = PREFIXES[i].length();
+      if (trimmed.indexOf(':', from) > -1)
+	from = trimmed.indexOf(':', from) + 1;
+      values = numbers(trimmed, from);
+      if (values[0] != null) {
+	m_Metrics.put(KEYS[i], values[0]);
+	if ((values[1] != null) && (KEYS[i].equals("correct") || KEYS[i].equals("incorrect")))
+	  m_Metrics.put(KEYS[i] + "_pct", values[1]);
+      }
+      break;
+    }
+  }
+
+  /**
+   * Quotes the string for CSV if necessary.
+   *
+   * @param s		the string to quote
+   * @return		the (quoted) string
+   */
+  protected static String quoteCSV(String s) {
+    if ((s.indexOf(',') > -1) || (s.indexOf('"') > -1) || (s.indexOf('\n') > -1))
+      return "\"" + s.replace("\"", "\"\"") + "\"";
+    return s;
+  }
+
+  /**
+   * Quotes the string for JSON.
+   *
+   * @param s		the string to quote
+   * @return		the quoted string
+   */
+  protected static String quoteJSON(String s) {
+    return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\t", "\\t") + "\"";
+  }
+
+  /**
+   * Generates the CSV header.
+   *
+   * @return		the header
+   */
+  protected String header() {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    for (String col: COLUMNS) {
+      if (result.length() > 0)
+	result.append(",");
+      result.append(col);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Generates the record from the collected metrics.
+   *
+   * @return		the record
+   */
+  protected String record() {
+    StringBuilder	result;
+    String		value;
+    boolean		first;
+
+    result = new StringBuilder();
+    first  = true;
+
+    if (m_Format.equals(FORMAT_JSON)) {
+      result.append("{");
+      for (String col: COLUMNS) {
+	if (col.equals(COL_LABEL)) {
+	  value = quoteJSON(m_Label);
+	}
+	else {
+	  value = m_Metrics.get(col);
+	  if (value == null)
+	    continue;
+	  // NaN/Infinity are not valid JSON numbers
+	  if (Double.isNaN(Double.parseDouble(value)) || Double.isInfinite(Double.parseDouble(value)))
+	    value = quoteJSON(value);
+	}
+	if (!first)
+	  result.append(", ");
+	result.append(quoteJSON(col)).append(": ").append(value);
+	first = false;
+      }
+      result.append("}");
+    }
+    else {
+      for (String col: COLUMNS) {
+	if (!first)
+	  result.append(",");
+	if (col.equals(COL_LABEL))
+	  result.append(quoteCSV(m_Label));
+	else if (m_Metrics.containsKey(col))
+	  result.append(m_Metrics.get(col));
+	first = false;
+      }
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Outputs the record with the collected metrics.
+   *
+   * @param output	for forwarding the record
+   */
+  @Override
+  public void finish(OutputListener output) {
+    String	record;
+    String	msg;
+
+    super.finish(output);
+    if (m_Metrics == null)
+      return;
+
+    record = record();
+    if (m_Output != null) {
+      if (m_Format.equals(FORMAT_CSV) && (!m_Output.exists() || (m_Output.length() == 0)))
+	record = header() + "\n" + record;
+      msg = FileUtils.writeToFileMsg(m_Output.getAbsolutePath(), record, true, null);
+      if (msg != null)
+	addError(msg);
+    }
+    else {
+      if (m_Format.equals(FORMAT_CSV))
+	output.outputOccurred(header(), true);
+      output.outputOccurred(record, true);
+    }
+
+    m_Metrics = null;
+  }
+
+  /**
+   * Intercepts the process output.
+   *
+   * @param line	the output to process
+   * @param stdout	whether stdout or stderr
+   * @return		the string to keep or null
+   */
+  @Override
+  protected String doIntercept(String line, boolean stdout) {
+    if (m_Metrics == null)
+      start();
+    extract(line);
+    return m_Suppress ? null : line;
+  }
+}
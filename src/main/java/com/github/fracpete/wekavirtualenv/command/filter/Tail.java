@@ -0,0 +1,165 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Tail.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.filter;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
+
+/**
+ * Keeps only the last N lines, similar to the unix 'tail' command.
+ * The lines are buffered in a fixed-size ring buffer and output once the
+ * process has finished.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Tail
+  extends AbstractFilter {
+
+  /** the number of lines to keep. */
+  protected int m_NumLines;
+
+  /** the buffered lines. */
+  protected String[] m_Lines;
+
+  /** the stdout flags of the buffered lines. */
+  protected boolean[] m_StdOutFlags;
+
+  /** the total number of lines seen so far. */
+  protected long m_Count;
+
+  /**
+   * The name of the filter (used on the filterline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "tail";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Keeps only the last N lines, which get output once the process has finished.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser, null if no arguments to parse
+   */
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = super.getParser();
+    result.addOption("--n")
+      .dest("n")
+      .type(Type.INTEGER)
+      .help("the number of lines to keep.")
+      .setDefault(10);
+
+    return result;
+  }
+
+  /**
+   * Initializes the filter with the parsed options.
+   *
+   * @param ns		the parsed options
+   * @return		true if successfully parsed
+   */
+  public boolean initialize(Namespace ns) {
+    boolean	result;
+
+    result = super.initialize(ns);
+
+    if (result) {
+      m_NumLines = ns.getInt("n");
+      if (m_NumLines < 0) {
+	addError("Number of lines cannot be negative: " + m_NumLines);
+	return false;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Gets called before the process starts generating output.
+   */
+  @Override
+  public void start() {
+    super.start();
+    m_Lines       = new String[m_NumLines];
+    m_StdOutFlags = new boolean[m_NumLines];
+    m_Count       = 0;
+  }
+
+  /**
+   * Outputs the buffered lines.
+   *
+   * @param output	for forwarding the buffered output
+   */
+  @Override
+  public void finish(OutputListener output) {
+    long	i;
+    int		index;
+
+    super.finish(output);
+    if (m_Lines == null)
+      return;
+
+    for (i = Math.max(0, m_Count - m_NumLines); i < m_Count; i++) {
+      index = (int) (i % m_NumLines);
+      output.outputOccurred(m_Lines[index], m_StdOutFlags[index]);
+    }
+
+    m_Lines       = null;
+    m_StdOutFlags = null;
+  }
+
+  /**
+   * Intercepts the process output.
+   *
+   * @param line	the output to process
+   * @param stdout	whether stdout or stderr
+   * @return		the string to keep or null
+   */
+  @Override
+  protected String doIntercept(String line, boolean stdout) {
+    int		index;
+
+    if (m_Lines == null)
+      start();
+    if (m_NumLines > 0) {
+      index                = (int) (m_Count % m_NumLines);
+      m_Lines[index]       = line;
+      m_StdOutFlags[index] = stdout;
+    }
+    m_Count++;
+    return null;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TerminatingFilter.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.filter;
+
+/**
+ * Interface for filters that can signal that they are no longer interested
+ * in any further output, i.e., the process generating it can be stopped.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface TerminatingFilter
+  extends Filter {
+
+  /**
+   * Returns whether the process generating the output can be stopped.
+   *
+   * @return		true if no more output required
+   */
+  public boolean isTerminationRequested();
+}
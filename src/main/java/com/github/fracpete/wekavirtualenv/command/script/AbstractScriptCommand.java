@@ -28,7 +28,9 @@ import nz.ac.waikato.cms.locator.ClassLocator;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Ancestor for a command that can only be run within a script.
@@ -40,6 +42,9 @@ public abstract class AbstractScriptCommand
   extends AbstractCommand
   implements ScriptCommand {
 
+  /** the script command classes, indexed by name (lazily initialized). */
+  protected static Map<String,Class> m_ScriptCommandClasses;
+
   /** the script this command belongs to. */
   protected EngineContext m_Context;
 
@@ -116,6 +121,24 @@ public abstract class AbstractScriptCommand
     return result;
   }
 
+  /**
+   * Returns the script command classes, indexed by their name.
+   *
+   * @return		the classes
+   */
+  public static synchronized Map<String,Class> getScriptCommandClasses() {
+    Map<String,Class>	result;
+
+    if (m_ScriptCommandClasses == null) {
+      result = new HashMap<>();
+      for (ScriptCommand cmd: getScriptCommands())
+	result.putIfAbsent(cmd.getName(), cmd.getClass());
+      m_ScriptCommandClasses = result;
+    }
+
+    return m_ScriptCommandClasses;
+  }
+
   /**
    * Returns the command associated with the command name.
    *
@@ -123,16 +146,17 @@ public abstract class AbstractScriptCommand
    * @return		the command, null if not available
    */
   public static ScriptCommand getScriptCommand(String name) {
-    ScriptCommand	result;
+    Class	cls;
 
-    result = null;
-    for (ScriptCommand cmd: getScriptCommands()) {
-      if (cmd.getName().equals(name)) {
-        result = cmd;
-        break;
-      }
-    }
+    cls = getScriptCommandClasses().get(name);
+    if (cls == null)
+      return null;
 
-    return result;
+    try {
+      return (ScriptCommand) cls.newInstance();
+    }
+    catch (Exception e) {
+      return null;
+    }
   }
 }
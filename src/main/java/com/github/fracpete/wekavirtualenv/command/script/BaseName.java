@@ -31,7 +31,8 @@ import java.io.File;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class BaseName
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -22,16 +22,84 @@ package com.github.fracpete.wekavirtualenv.command.script;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import org.mariuszgromada.math.mxparser.Argument;
 import org.mariuszgromada.math.mxparser.Expression;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * For calculating the result of a mathematical expression.
  * Uses <a href="http://mathparser.org/">mXparser</a>.
+ * <br>
+ * Since variables have already been expanded when the command gets
+ * executed, the numbers in the expression get replaced with arguments
+ * (e.g., "1+2*3" turns into "calc_0+calc_1*calc_2"). The parsed expressions
+ * get cached using this template, allowing the same expression to be
+ * re-evaluated with different values, e.g., within loops.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class Calc
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
+
+  /** the prefix for the names of the arguments. */
+  public final static String ARG_PREFIX = "calc_";
+
+  /** the maximum number of cached expressions. */
+  public final static int MAX_EXPRESSIONS = 1000;
+
+  /**
+   * A parsed expression with its arguments.
+   */
+  protected static class CompiledExpression {
+
+    /** the expression. */
+    protected Expression m_Expression;
+
+    /** the arguments. */
+    protected Argument[] m_Arguments;
+
+    /**
+     * Parses the template.
+     *
+     * @param template	the template to parse
+     * @param numArgs	the number of arguments in the template
+     */
+    public CompiledExpression(String template, int numArgs) {
+      int	i;
+
+      m_Arguments = new Argument[numArgs];
+      for (i = 0; i < numArgs; i++)
+	m_Arguments[i] = new Argument(ARG_PREFIX + i, 0.0);
+      m_Expression = new Expression(template, m_Arguments);
+    }
+
+    /**
+     * Calculates the expression with the specified argument values.
+     *
+     * @param values	the values for the arguments
+     * @return		the result
+     */
+    public synchronized double calculate(List<Double> values) {
+      int	i;
+
+      for (i = 0; i < m_Arguments.length; i++)
+	m_Arguments[i].setArgumentValue(values.get(i));
+      return m_Expression.calculate();
+    }
+  }
+
+  /** the cache of parsed expressions. */
+  protected final static Map<String,CompiledExpression> EXPRESSIONS = new LinkedHashMap<String,CompiledExpression>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String,CompiledExpression> eldest) {
+      return (size() > MAX_EXPRESSIONS);
+    }
+  };
 
   /**
    * The name of the command (used on the commandline).
@@ -75,6 +143,134 @@ public class Calc
     return result;
   }
 
+  /**
+   * Checks whether the character can be part of a name.
+   *
+   * @param c		the character to check
+   * @return		true if part of a name
+   */
+  protected static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || (c == '_') || (c == '.');
+  }
+
+  /**
+   * Replaces the numbers in the expression with arguments. Numbers that
+   * are part of a name (e.g., "log10") or directly followed by one (e.g.,
+   * "2pi") are left untouched.
+   *
+   * @param expr	the expression to process
+   * @param values	for storing the values of the arguments
+   * @return		the template
+   */
+  protected static String toTemplate(String expr, List<Double> values) {
+    StringBuilder	result;
+    int			pos;
+    int			start;
+    int			end;
+    char		c;
+
+    result = new StringBuilder();
+    pos    = 0;
+    while (pos < expr.length()) {
+      c     = expr.charAt(pos);
+      start = pos;
+
+      // name
+      if (Character.isLetter(c) || (c == '_')) {
+	while ((pos < expr.length()) && isNameChar(expr.charAt(pos)))
+	  pos++;
+	result.append(expr, start, pos);
+	continue;
+      }
+
+      // number
+      if (Character.isDigit(c) || ((c == '.') && (pos + 1 < expr.length()) && Character.isDigit(expr.charAt(pos + 1)))) {
+	while ((pos < expr.length()) && Character.isDigit(expr.charAt(pos)))
+	  pos++;
+	if ((pos < expr.length()) && (expr.charAt(pos) == '.')) {
+	  pos++;
+	  while ((pos < expr.length()) && Character.isDigit(expr.charAt(pos)))
+	    pos++;
+	}
+	// exponent
+	if ((pos < expr.length()) && ((expr.charAt(pos) == 'e') || (expr.charAt(pos) == 'E'))) {
+	  end = pos + 1;
+	  if ((end < expr.length()) && ((expr.charAt(end) == '+') || (expr.charAt(end) == '-')))
+	    end++;
+	  if ((end < expr.length()) && Character.isDigit(expr.charAt(end))) {
+	    pos = end;
+	    while ((pos < expr.length()) && Character.isDigit(expr.charAt(pos)))
+	      pos++;
+	  }
+	}
+	if ((pos < expr.length()) && isNameChar(expr.charAt(pos))) {
+	  while ((pos < expr.length()) && isNameChar(expr.charAt(pos)))
+	    pos++;
+	  result.append(expr, start, pos);
+	}
+	else {
+	  result.append(ARG_PREFIX).append(values.size());
+	  values.add(Double.parseDouble(expr.substring(start, pos)));
+	}
+	continue;
+      }
+
+      result.append(c);
+      pos++;
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the parsed expression for the template, parses it if necessary.
+   *
+   * @param template	the template
+   * @param numArgs	the number of arguments in the template
+   * @return		the parsed expression
+   */
+  protected static CompiledExpression compile(String template, int numArgs) {
+    CompiledExpression	result;
+
+    synchronized (EXPRESSIONS) {
+      result = EXPRESSIONS.get(template);
+      if (result == null) {
+	result = new CompiledExpression(template, numArgs);
+	EXPRESSIONS.put(template, result);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Calculates the result of the expression.
+   *
+   * @param expr	the expression to calculate
+   * @return		the result
+   */
+  public static double calculate(String expr) {
+    List<Double>	values;
+    String		template;
+
+    values   = new ArrayList<>();
+    template = toTemplate(expr, values);
+    return compile(template, values.size()).calculate(values);
+  }
+
+  /**
+   * Turns the result into a string, omitting the decimals for integers.
+   *
+   * @param value	the value to format
+   * @return		the formatted value
+   */
+  public static String format(double value) {
+    if ((value == Math.rint(value)) && (Math.abs(value) < 1e15))
+      return Long.toString((long) value);
+    else
+      return Double.toString(value);
+  }
+
   /**
    * Evaluates the script command.
    *
@@ -84,10 +280,7 @@ public class Calc
    */
   @Override
   protected boolean evalCommand(Namespace ns, String[] options) {
-    Expression		expr;
-
-    expr = new Expression(ns.getString("expr"));
-    getContext().getVariables().set(ns.getString("dest"), "" + expr.calculate());
+    getContext().getVariables().set(ns.getString("dest"), format(calculate(ns.getString("expr"))));
 
     return true;
   }
@@ -64,7 +64,7 @@ public class DumpVars
 
     for (String name: getContext().getVariables().names()) {
       val = getContext().getVariables().get(name);
-      if (val instanceof String)
+      if ((val instanceof String) || (val instanceof StreamVariable))
 	println(name + "=" + val, true);
       else
         println(name + "=" + Utils.flatten((String[]) val, ", "), true);
@@ -0,0 +1,108 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ExportVar.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+
+/**
+ * Passes on variables from the current scope (e.g., a loop iteration) to
+ * the enclosing one.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ExportVar
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
+
+  /**
+   * The name of the command (used on the commandline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "export";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Passes on the specified variables to the enclosing scope, e.g., from within a loop.\n"
+      + "Removed variables get removed from the enclosing scope as well.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser
+   */
+  @Override
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = new ArgumentParser(getName());
+    result.addOption("--global")
+      .dest("global")
+      .help("whether to pass on the variables to the outermost scope (i.e., the script) rather than just the enclosing one.")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Returns whether the command utilizes additional arguments that get passed on.
+   *
+   * @return		true if additional options
+   */
+  @Override
+  public boolean supportsAdditionalArguments() {
+    return true;
+  }
+
+  /**
+   * Evaluates the script command.
+   *
+   * @param ns		the namespace
+   * @param options	the options
+   * @return		true if successful
+   */
+  @Override
+  protected boolean evalCommand(Namespace ns, String[] options) {
+    Variables	vars;
+
+    if (options.length == 0) {
+      addError("Missing name(s) of variable(s) to export!");
+      return false;
+    }
+
+    // in the outermost scope, variables are already visible everywhere
+    vars = getContext().getVariables();
+    for (String name: options)
+      vars.export(name, ns.getBoolean("global"));
+
+    return true;
+  }
+}
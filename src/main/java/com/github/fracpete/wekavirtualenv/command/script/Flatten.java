@@ -31,7 +31,8 @@ import nz.ac.waikato.cms.core.Utils;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class Flatten
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -96,6 +97,15 @@ public class Flatten
       addError("Variable not present: " + ns.getString("array"));
       return false;
     }
+    if (value instanceof StreamVariable) {
+      try {
+	value = ((StreamVariable) value).toArray();
+      }
+      catch (Exception e) {
+	addError("Failed to read elements of variable: " + ns.getString("array"), e);
+	return false;
+      }
+    }
     if (value instanceof String)
       flat = (String) value;
     else
@@ -23,10 +23,23 @@ package com.github.fracpete.wekavirtualenv.command.script;
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
 import com.github.fracpete.simpleargparse4j.Option.Type;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
 import com.github.fracpete.wekavirtualenv.command.script.instructions.Block;
 import com.github.fracpete.wekavirtualenv.command.script.instructions.Engine;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Planner;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.ScopedContext;
 import com.github.fracpete.wekavirtualenv.core.Destroyable;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Good ole for loop.
  *
@@ -34,7 +47,7 @@ import com.github.fracpete.wekavirtualenv.core.Destroyable;
  */
 public class For
   extends AbstractScriptCommand
-  implements InstructionBlockHandler, IteratingScriptCommand, Destroyable {
+  implements InstructionBlockHandler, IteratingScriptCommand, PlanningSupporter, Destroyable {
 
   /** the instructions to execute with each element. */
   protected Block m_Instructions;
@@ -42,8 +55,14 @@ public class For
   /** the variable to store the current element under. */
   protected String m_Variable;
 
-  /** the current amount. */
-  protected double m_Amount;
+  /** the lower bound. */
+  protected double m_From;
+
+  /** the number of values in the range. */
+  protected long m_Count;
+
+  /** the index of the next value. */
+  protected long m_Index;
 
   /** the upper bound. */
   protected double m_Upper;
@@ -54,12 +73,24 @@ public class For
   /** whether we are in verbose mode. */
   protected boolean m_Verbose;
 
+  /** the number of iterations to run in parallel. */
+  protected int m_Parallel;
+
   /** whether the iteration got stopped. */
-  protected boolean m_Stopped;
+  protected volatile boolean m_Stopped;
 
   /** for executing the current iteration. */
   protected Engine m_Current;
 
+  /** the executions of the currently running parallel iterations. */
+  protected Set<Engine> m_Running;
+
+  /** the output of the finished parallel iterations that is not flushed yet (index - output). */
+  protected Map<Long,IterationOutput> m_Outputs;
+
+  /** the index of the next parallel iteration to flush the output for. */
+  protected long m_NextOutput;
+
   /**
    * The name of the command (used on the commandline).
    *
@@ -77,7 +108,9 @@ public class For
    */
   @Override
   public String getHelp() {
-    return "Iterates through the numeric values from lower to upper bound, using the specified step amount.";
+    return "Iterates through the numeric values from lower to upper bound, using the specified step amount.\n"
+      + "Each iteration has its own scope for variables, use 'export' to pass on variables.\n"
+      + "The range can be split into chunks that are run in parallel.";
   }
 
   /**
@@ -102,13 +135,19 @@ public class For
       .required(true);
     result.addOption("--step")
       .dest("step")
-      .type(Type.INTEGER)
-      .help("the step amount for each iteration.")
-      .setDefault(1);
+      .type(Type.DOUBLE)
+      .help("the step amount for each iteration (must be positive).")
+      .setDefault(1.0);
     result.addOption("--dest")
       .dest("dest")
       .help("the name of the var to store current value under.")
       .required(true);
+    result.addOption("--parallel")
+      .dest("parallel")
+      .help("the number of chunks to split the range into and run in parallel; "
+	+ "the output of each iteration gets collected and output in the order of the values.")
+      .type(Type.INTEGER)
+      .setDefault(1);
     result.addOption("--verbose")
       .dest("verbose")
       .help("in verbose mode, commands to be executed are output on stderr")
@@ -134,7 +173,20 @@ public class For
    */
   @Override
   public boolean canIterate() {
-    return !m_Stopped && (m_Amount + m_Step < m_Upper);
+    return !m_Stopped && (m_Index < m_Count);
+  }
+
+  /**
+   * Turns the value into a string, omitting the decimals for integers.
+   *
+   * @param value	the value to convert
+   * @return		the string
+   */
+  protected String format(double value) {
+    if ((int) value == value)
+      return "" + (int) value;
+    else
+      return "" + value;
   }
 
   /**
@@ -144,23 +196,178 @@ public class For
    */
   @Override
   public boolean iterate() {
-    boolean	result;
-    String	current;
+    boolean		result;
+    double		value;
+    ScopedContext	context;
 
-    m_Amount += m_Step;
-    if ((int) m_Amount == m_Amount)
-      current = "" + (int) m_Amount;
-    else
-      current = "" + m_Amount;
-    getVariables().set(m_Variable, current);
+    value   = getValue(m_Index++);
+    context = new ScopedContext(m_Context);
+    context.getVariables().set(m_Variable, format(value));
     if (m_Verbose)
-      println("[FOR] " + m_Amount, false);
-    m_Current = new Engine(m_Context, m_Instructions, m_Verbose, m_OutputListeners);
-    result   = m_Current.execute();
+      println("[FOR] " + value, false);
+    m_Current = new Engine(context, m_Instructions, m_Verbose, m_OutputListeners);
+    result    = m_Current.execute();
     m_Current = null;
     return result;
   }
 
+  /**
+   * Performs an iteration in parallel to others, using a separate scope
+   * for the variables. The output gets collected and passed on in order.
+   *
+   * @param index	the index of the iteration
+   * @param value	the value of the iteration
+   * @return		true if successfully executed
+   */
+  protected boolean iterate(long index, double value) {
+    ScopedContext	context;
+    IterationOutput	output;
+    Set<OutputListener>	listeners;
+    Engine		engine;
+    String		current;
+
+    current = format(value);
+    context = new ScopedContext(m_Context);
+    context.getVariables().set(m_Variable, current);
+    output    = new IterationOutput("[" + current + "] ", true, m_OutputListeners);
+    listeners = new HashSet<>();
+    listeners.add(output);
+    if (m_Verbose)
+      output.outputOccurred("[FOR] " + value, false);
+    engine = new Engine(context, m_Instructions, m_Verbose, listeners);
+    m_Running.add(engine);
+    try {
+      if (m_Stopped)
+	return false;
+      return engine.execute();
+    }
+    catch (Exception e) {
+      context.addError("Failed to process: " + current, e);
+      return false;
+    }
+    finally {
+      m_Running.remove(engine);
+      finished(index, output);
+    }
+  }
+
+  /**
+   * Records the output of the finished iteration and passes on the output
+   * of all the consecutive iterations that have finished.
+   *
+   * @param index	the index of the iteration
+   * @param output	the collected output
+   */
+  protected void finished(long index, IterationOutput output) {
+    synchronized (m_Outputs) {
+      m_Outputs.put(index, output);
+      while (m_Outputs.containsKey(m_NextOutput)) {
+	m_Outputs.remove(m_NextOutput).flush();
+	m_NextOutput++;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of values in the range, i.e., the values
+   * 'from + i * step' that are less than the upper bound.
+   *
+   * @param from	the lower bound
+   * @return		the number of values
+   */
+  protected long getCount(double from) {
+    long	result;
+
+    if (from >= m_Upper)
+      return 0;
+
+    result = (long) Math.ceil((m_Upper - from) / m_Step);
+    // correct rounding errors
+    while ((result > 0) && (from + (result - 1) * m_Step >= m_Upper))
+      result--;
+    while (from + result * m_Step < m_Upper)
+      result++;
+
+    return result;
+  }
+
+  /**
+   * Returns the value of the range at the specified position.
+   *
+   * @param index	the position of the value
+   * @return		the value
+   */
+  protected double getValue(long index) {
+    return m_From + index * m_Step;
+  }
+
+  /**
+   * Returns the number of values per chunk.
+   *
+   * @param numValues	the total number of values
+   * @return		the chunk size
+   */
+  protected long getChunkSize(long numValues) {
+    return (long) Math.ceil((double) numValues / m_Parallel);
+  }
+
+  /**
+   * Splits the range into chunks and executes them in parallel.
+   *
+   * @return		true if all iterations successfully executed
+   */
+  protected boolean iterateParallel() {
+    final AtomicBoolean		success;
+    ExecutorService		executor;
+    long			chunk;
+    long			start;
+
+    if (m_Count == 0)
+      return true;
+
+    success      = new AtomicBoolean(true);
+    m_Running    = Collections.synchronizedSet(new HashSet<>());
+    m_Outputs    = new TreeMap<>();
+    m_NextOutput = 0;
+    chunk        = getChunkSize(m_Count);
+    executor     = Executors.newFixedThreadPool((int) Math.min(m_Parallel, m_Count));
+    for (start = 0; start < m_Count; start += chunk) {
+      final long first = start;
+      final long last  = Math.min(m_Count, start + chunk);
+      executor.execute(() -> {
+	for (long n = first; n < last; n++) {
+	  if (m_Stopped || !success.get())
+	    break;
+	  if (!iterate(n, getValue(n)))
+	    success.set(false);
+	}
+      });
+    }
+    executor.shutdown();
+
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+	// waiting
+      }
+    }
+    catch (InterruptedException e) {
+      destroy();
+      addError("Interrupted while waiting for iterations to finish!");
+      return false;
+    }
+    finally {
+      // output of iterations that finished after a failed/skipped one
+      synchronized (m_Outputs) {
+	for (IterationOutput output: m_Outputs.values())
+	  output.flush();
+	m_Outputs.clear();
+	m_NextOutput = m_Count;
+      }
+    }
+
+    return success.get();
+  }
+
   /**
    * Returns the managed variables.
    *
@@ -171,6 +378,74 @@ public class For
     return m_Context.getVariables();
   }
 
+  /**
+   * Initializes the loop with the parsed options.
+   *
+   * @param ns		the namespace
+   * @return		true if successfully initialized
+   */
+  protected boolean initLoop(Namespace ns) {
+    m_Step     = ns.getDouble("step");
+    m_Upper    = ns.getDouble("to");
+    m_Verbose  = ns.getBoolean("verbose");
+    m_Variable = ns.getString("dest");
+    m_Parallel = ns.getInt("parallel");
+
+    if (m_Step <= 0) {
+      addError("Step amount must be positive: " + m_Step);
+      return false;
+    }
+
+    m_From  = ns.getDouble("from");
+    m_Count = getCount(m_From);
+    m_Index = 0;
+
+    return true;
+  }
+
+  /**
+   * Plans the iterations without launching any processes. With parallel
+   * execution, the estimate is the one of the slowest chunk.
+   *
+   * @param ns		the namespace of the parsed options
+   * @param options	additional command-line options
+   * @param block	the nested block for the command, if any
+   * @param planner	the planner to use for the instructions
+   * @return		the estimated time in msec, -1 if failed to plan
+   */
+  @Override
+  public long plan(Namespace ns, String[] options, Block block, Planner planner) {
+    long		result;
+    long		chunkTime;
+    long		time;
+    ScopedContext	context;
+    long		chunk;
+    long		i;
+
+    if (!initLoop(ns))
+      return -1;
+    if ((block == null) || (m_Count == 0))
+      return 0;
+
+    chunk     = (m_Parallel > 1) ? getChunkSize(m_Count) : m_Count;
+    result    = 0;
+    chunkTime = 0;
+    for (i = 0; i < m_Count; i++) {
+      context = new ScopedContext(m_Context);
+      context.getVariables().set(m_Variable, format(getValue(i)));
+      time = planner.plan(block, context);
+      if (time == -1)
+	return -1;
+      chunkTime += time;
+      if (((i + 1) % chunk == 0) || (i == m_Count - 1)) {
+	result    = Math.max(result, chunkTime);
+	chunkTime = 0;
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Evaluates the script command.
    *
@@ -182,18 +457,20 @@ public class For
   protected boolean evalCommand(Namespace ns, String[] options) {
     boolean	result;
 
-    m_Step     = ns.getDouble("step");
-    m_Upper    = ns.getDouble("to");
-    m_Amount = ns.getDouble("from") - m_Step;
-    m_Verbose  = ns.getBoolean("verbose");
-    m_Variable = ns.getString("dest");
+    if (!initLoop(ns))
+      return false;
 
     result = true;
 
-    while (canIterate()) {
-      result = iterate();
-      if (!result)
-        break;
+    if (m_Parallel > 1) {
+      result = iterateParallel();
+    }
+    else {
+      while (canIterate()) {
+	result = iterate();
+	if (!result)
+	  break;
+      }
     }
 
     return result;
@@ -206,5 +483,11 @@ public class For
     m_Stopped = true;
     if (m_Current != null)
       m_Current.destroy();
+    if (m_Running != null) {
+      synchronized (m_Running) {
+	for (Engine engine: m_Running)
+	  engine.destroy();
+      }
+    }
   }
 }
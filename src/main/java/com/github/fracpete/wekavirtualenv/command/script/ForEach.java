@@ -22,13 +22,27 @@ package com.github.fracpete.wekavirtualenv.command.script;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
 import com.github.fracpete.wekavirtualenv.command.script.instructions.Block;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
 import com.github.fracpete.wekavirtualenv.command.script.instructions.Engine;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Planner;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.ScopedContext;
 import com.github.fracpete.wekavirtualenv.core.Destroyable;
 
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 /**
  * Iterates through the elements of a variable and executes the nested instructions.
@@ -37,13 +51,16 @@ import java.util.List;
  */
 public class ForEach
   extends AbstractScriptCommand
-  implements InstructionBlockHandler, IteratingScriptCommand, Destroyable {
+  implements InstructionBlockHandler, IteratingScriptCommand, PlanningSupporter, Destroyable {
 
   /** the instructions to execute with each element. */
   protected Block m_Instructions;
 
   /** the elements to iterate. */
-  protected List<String> m_Elements;
+  protected Iterator<String> m_Elements;
+
+  /** the stream the elements come from, null if not streamed. */
+  protected Stream<String> m_Stream;
 
   /** the variable to store the current element under. */
   protected String m_Variable;
@@ -51,12 +68,21 @@ public class ForEach
   /** whether we are in verbose mode. */
   protected boolean m_Verbose;
 
+  /** the number of iterations to run in parallel. */
+  protected int m_Parallel;
+
+  /** whether to group the output of parallel iterations. */
+  protected boolean m_Group;
+
   /** whether the iteration got stopped. */
-  protected boolean m_Stopped;
+  protected volatile boolean m_Stopped;
 
   /** the execution of the current iteration. */
   protected Engine m_Current;
 
+  /** the executions of the currently running parallel iterations. */
+  protected Set<Engine> m_Running;
+
   /**
    * The name of the command (used on the commandline).
    *
@@ -74,7 +100,10 @@ public class ForEach
    */
   @Override
   public String getHelp() {
-    return "Iterates through the elements of a variable and executes the nested instructions.";
+    return "Iterates through the elements of a variable, the lines of a file or the files in a directory\n"
+      + "and executes the nested instructions.\n"
+      + "Each iteration has its own scope for variables, use 'export' to pass on variables.\n"
+      + "Iterations can be run in parallel.";
   }
 
   /**
@@ -89,12 +118,26 @@ public class ForEach
     result = new ArgumentParser(getName());
     result.addOption("--iterate")
       .dest("iterate")
-      .help("the variable to iterate.")
-      .required(true);
+      .help("the variable to iterate.");
+    result.addOption("--lines")
+      .dest("lines")
+      .help("the text file to iterate line by line, read lazily.");
+    result.addOption("--walk")
+      .dest("walk")
+      .help("the directory to iterate the files of (recursively), traversed lazily.");
     result.addOption("--dest")
       .dest("dest")
       .help("the name of the variable to store the result in.")
       .required(true);
+    result.addOption("--parallel")
+      .dest("parallel")
+      .help("the number of iterations to run in parallel.")
+      .type(Type.INTEGER)
+      .setDefault(1);
+    result.addOption("--group")
+      .dest("group")
+      .help("groups the output of parallel iterations rather than prefixing each line with the element.")
+      .argument(false);
     result.addOption("--verbose")
       .dest("verbose")
       .help("in verbose mode, commands to be executed are output on stderr")
@@ -120,7 +163,7 @@ public class ForEach
    */
   @Override
   public boolean canIterate() {
-    return !m_Stopped && (m_Elements.size() > 0);
+    return !m_Stopped && m_Elements.hasNext();
   }
 
   /**
@@ -130,19 +173,108 @@ public class ForEach
    */
   @Override
   public boolean iterate() {
-    boolean	result;
-    String	next;
+    boolean		result;
+    String		next;
+    ScopedContext	context;
 
-    next = m_Elements.remove(0);
-    getVariables().set(m_Variable, next);
+    next    = m_Elements.next();
+    context = new ScopedContext(m_Context);
+    context.getVariables().set(m_Variable, next);
     if (m_Verbose)
       println("[FOREACH] " + next, false);
-    m_Current = new Engine(m_Context, m_Instructions, m_Verbose, m_OutputListeners);
+    m_Current = new Engine(context, m_Instructions, m_Verbose, m_OutputListeners);
     result    = m_Current.execute();
     m_Current = null;
     return result;
   }
 
+  /**
+   * Performs an iteration in parallel to others, using a separate scope
+   * for the variables.
+   *
+   * @param element	the element to process
+   * @return		true if successfully executed
+   */
+  protected boolean iterate(String element) {
+    ScopedContext	context;
+    IterationOutput	output;
+    Set<OutputListener>	listeners;
+    Engine		engine;
+
+    context = new ScopedContext(m_Context);
+    context.getVariables().set(m_Variable, element);
+    output    = new IterationOutput("[" + element + "] ", m_Group, m_OutputListeners);
+    listeners = new HashSet<>();
+    listeners.add(output);
+    if (m_Verbose)
+      output.outputOccurred("[FOREACH] " + element, false);
+    engine = new Engine(context, m_Instructions, m_Verbose, listeners);
+    m_Running.add(engine);
+    try {
+      if (m_Stopped)
+	return false;
+      return engine.execute();
+    }
+    catch (Exception e) {
+      context.addError("Failed to process: " + element, e);
+      return false;
+    }
+    finally {
+      m_Running.remove(engine);
+      output.flush();
+    }
+  }
+
+  /**
+   * Performs the iterations in parallel.
+   *
+   * @return		true if all iterations successfully executed
+   */
+  protected boolean iterateParallel() {
+    final AtomicBoolean		success;
+    ExecutorService		executor;
+    int				i;
+
+    success   = new AtomicBoolean(true);
+    m_Running = Collections.synchronizedSet(new HashSet<>());
+    executor  = Executors.newFixedThreadPool(m_Parallel);
+    for (i = 0; i < m_Parallel; i++) {
+      executor.execute(() -> {
+	String element;
+	while (!m_Stopped && success.get()) {
+	  synchronized (m_Elements) {
+	    try {
+	      if (!m_Elements.hasNext())
+		break;
+	      element = m_Elements.next();
+	    }
+	    catch (Exception e) {
+	      m_Context.addError("Failed to obtain next element!", e);
+	      success.set(false);
+	      break;
+	    }
+	  }
+	  if (!iterate(element))
+	    success.set(false);
+	}
+      });
+    }
+    executor.shutdown();
+
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+	// waiting
+      }
+    }
+    catch (InterruptedException e) {
+      destroy();
+      addError("Interrupted while waiting for iterations to finish!");
+      return false;
+    }
+
+    return success.get();
+  }
+
   /**
    * Returns the managed variables.
    *
@@ -153,6 +285,109 @@ public class ForEach
     return m_Context.getVariables();
   }
 
+  /**
+   * Initializes the elements to iterate and the other parameters of the
+   * loop with the parsed options.
+   *
+   * @param ns		the namespace
+   * @return		true if successfully initialized
+   */
+  protected boolean initLoop(Namespace ns) {
+    Object	var;
+
+    m_Elements = null;
+    m_Stream   = null;
+    try {
+      if (ns.getString("iterate") != null) {
+	var = getVariables().get(ns.getString("iterate"));
+	if (var == null) {
+	  addError("Variable not present for iteration: " + ns.getString("iterate"));
+	  return false;
+	}
+	if (var instanceof StreamVariable)
+	  m_Stream = ((StreamVariable) var).open();
+	else if (var instanceof String)
+	  m_Elements = Collections.singletonList((String) var).iterator();
+	else
+	  m_Elements = Arrays.asList((String[]) var).iterator();
+      }
+      else if (ns.getString("lines") != null) {
+	m_Stream = Files.lines(Paths.get(ns.getString("lines")));
+      }
+      else if (ns.getString("walk") != null) {
+	m_Stream = Files.walk(Paths.get(ns.getString("walk")))
+	  .filter(Files::isRegularFile)
+	  .map(Path::toString);
+      }
+      else {
+	addError("No elements to iterate specified (--iterate, --lines or --walk)!");
+	return false;
+      }
+    }
+    catch (Exception e) {
+      addError("Failed to initialize iteration!", e);
+      return false;
+    }
+    if (m_Stream != null)
+      m_Elements = m_Stream.iterator();
+
+    m_Verbose  = ns.getBoolean("verbose");
+    m_Variable = ns.getString("dest");
+    m_Parallel = ns.getInt("parallel");
+    m_Group    = ns.getBoolean("group");
+
+    return true;
+  }
+
+  /**
+   * Plans the iterations without launching any processes. With parallel
+   * execution, the estimate assumes that the iterations are spread evenly.
+   *
+   * @param ns		the namespace of the parsed options
+   * @param options	additional command-line options
+   * @param block	the nested block for the command, if any
+   * @param planner	the planner to use for the instructions
+   * @return		the estimated time in msec, -1 if failed to plan
+   */
+  @Override
+  public long plan(Namespace ns, String[] options, Block block, Planner planner) {
+    long		result;
+    long		time;
+    int			count;
+    ScopedContext	context;
+
+    if (!initLoop(ns))
+      return -1;
+
+    result = 0;
+    count  = 0;
+    try {
+      while ((block != null) && m_Elements.hasNext()) {
+	context = new ScopedContext(m_Context);
+	context.getVariables().set(m_Variable, m_Elements.next());
+	time = planner.plan(block, context);
+	if (time == -1)
+	  return -1;
+	result += time;
+	count++;
+      }
+    }
+    catch (Exception e) {
+      addError("Failed to iterate!", e);
+      return -1;
+    }
+    finally {
+      if (m_Stream != null)
+	m_Stream.close();
+      m_Stream = null;
+    }
+
+    if ((m_Parallel > 1) && (count > 0))
+      result /= Math.min(m_Parallel, count);
+
+    return result;
+  }
+
   /**
    * Evaluates the script command.
    *
@@ -163,30 +398,32 @@ public class ForEach
   @Override
   protected boolean evalCommand(Namespace ns, String[] options) {
     boolean	result;
-    Object	var;
 
-    m_Elements = new ArrayList<>();
-    var = getVariables().get(ns.getString("iterate"));
-    if (var != null) {
-      if (var instanceof String)
-        m_Elements.add((String) var);
-      else
-        m_Elements.addAll(Arrays.asList((String[]) var));
-    }
-    else {
-      addError("Variable not present for iteration: " + ns.getString("iterate"));
+    if (!initLoop(ns))
       return false;
-    }
-
-    m_Verbose = ns.getBoolean("verbose");
-    m_Variable = ns.getString("dest");
 
     result = true;
 
-    while (canIterate()) {
-      result = iterate();
-      if (!result)
-        break;
+    try {
+      if (m_Parallel > 1) {
+	result = iterateParallel();
+      }
+      else {
+	while (canIterate()) {
+	  result = iterate();
+	  if (!result)
+	    break;
+	}
+      }
+    }
+    catch (Exception e) {
+      addError("Failed to iterate!", e);
+      result = false;
+    }
+    finally {
+      if (m_Stream != null)
+	m_Stream.close();
+      m_Stream = null;
     }
 
     return result;
@@ -199,5 +436,11 @@ public class ForEach
     m_Stopped = true;
     if (m_Current != null)
       m_Current.destroy();
+    if (m_Running != null) {
+      synchronized (m_Running) {
+	for (Engine engine: m_Running)
+	  engine.destroy();
+      }
+    }
   }
 }
@@ -0,0 +1,183 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Include.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Block;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Engine;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Planner;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.ScopedContext;
+import com.github.fracpete.wekavirtualenv.core.Destroyable;
+
+import java.io.File;
+
+/**
+ * Executes the instructions of another script file within the current
+ * script, using the current variables. Parsed script files get cached,
+ * i.e., a file only gets parsed again if it has been modified.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Include
+  extends AbstractScriptCommand
+  implements PlanningSupporter, Destroyable {
+
+  /** the execution of the included instructions. */
+  protected Engine m_Current;
+
+  /** whether the execution got stopped. */
+  protected boolean m_Stopped;
+
+  /**
+   * The name of the command (used on the commandline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "include";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Executes the instructions of another script file as if they were part of the current script.\n"
+      + "Variables set by the included instructions are available afterwards.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser
+   */
+  @Override
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = new ArgumentParser(getName());
+    result.addOption("--file")
+      .dest("file")
+      .help("the script file to include")
+      .required(true);
+    result.addOption("--verbose")
+      .dest("verbose")
+      .help("in verbose mode, commands to be executed are output on stderr")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Loads the instructions from the script file.
+   *
+   * @param file	the script file to load
+   * @return		the instructions, null if failed to load
+   */
+  protected Block load(File file) {
+    if (!file.exists()) {
+      addError("Script file does not exist: " + file);
+      return null;
+    }
+    if (file.isDirectory()) {
+      addError("Script file points to a directory: " + file);
+      return null;
+    }
+
+    // the chain of contexts records the files being included, also across threads
+    if (m_Context.isIncluding(file.getAbsolutePath())) {
+      addError("Script file includes itself: " + file);
+      return null;
+    }
+
+    try {
+      return Block.load(file);
+    }
+    catch (Exception e) {
+      addError("Failed to load instructions from: " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Plans the included instructions without launching any processes.
+   *
+   * @param ns		the namespace of the parsed options
+   * @param options	additional command-line options
+   * @param block	the nested block for the command, if any
+   * @param planner	the planner to use for the instructions
+   * @return		the estimated time in msec, -1 if failed to plan
+   */
+  @Override
+  public long plan(Namespace ns, String[] options, Block block, Planner planner) {
+    File	file;
+    Block	instructions;
+
+    file         = new File(ns.getString("file"));
+    instructions = load(file);
+    if (instructions == null)
+      return -1;
+
+    return planner.plan(instructions, new ScopedContext(m_Context, m_Context.getVariables(), file.getAbsolutePath()));
+  }
+
+  /**
+   * Evaluates the script command.
+   *
+   * @param ns		the namespace
+   * @param options	the options
+   * @return		true if successful
+   */
+  @Override
+  protected boolean evalCommand(Namespace ns, String[] options) {
+    File	file;
+    Block	instructions;
+
+    file         = new File(ns.getString("file"));
+    instructions = load(file);
+    if (instructions == null)
+      return false;
+
+    if (m_Stopped)
+      return false;
+
+    try {
+      m_Current = new Engine(new ScopedContext(m_Context, m_Context.getVariables(), file.getAbsolutePath()), instructions, ns.getBoolean("verbose"), m_OutputListeners);
+      return m_Current.execute();
+    }
+    finally {
+      m_Current = null;
+    }
+  }
+
+  /**
+   * Destroys the process if possible.
+   */
+  public void destroy() {
+    m_Stopped = true;
+    if (m_Current != null)
+      m_Current.destroy();
+  }
+}
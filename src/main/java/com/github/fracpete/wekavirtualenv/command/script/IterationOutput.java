@@ -0,0 +1,139 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * IterationOutput.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import com.github.fracpete.wekavirtualenv.command.CommandUtils;
+import com.github.fracpete.wekavirtualenv.command.ConsoleOutputListener;
+import com.github.fracpete.wekavirtualenv.command.OutputEvent;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the output of a single iteration that runs concurrently with
+ * others. The output is either prefixed and passed on immediately or
+ * grouped and passed on in one go once the iteration finished.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class IterationOutput
+  implements ConsoleOutputListener {
+
+  /** the lock for writing output. */
+  protected final static Object LOCK = new Object();
+
+  /** the prefix to use. */
+  protected String m_Prefix;
+
+  /** whether to group the output. */
+  protected boolean m_Group;
+
+  /** the listeners to pass the output on to. */
+  protected Set<OutputListener> m_Listeners;
+
+  /** whether to output on the console. */
+  protected boolean m_Console;
+
+  /** the buffered lines. */
+  protected List<String> m_Lines;
+
+  /** whether the buffered lines were stdout or stderr. */
+  protected List<Boolean> m_StdOut;
+
+  /** the event for notifying the listeners. */
+  protected OutputEvent m_OutputEvent;
+
+  /**
+   * Initializes the output.
+   *
+   * @param prefix	the prefix for the lines (when not grouping)
+   * @param group	whether to group the output rather than prefixing it
+   * @param listeners	the listeners to pass the output on to
+   */
+  public IterationOutput(String prefix, boolean group, Collection<OutputListener> listeners) {
+    super();
+    m_Prefix      = prefix;
+    m_Group       = group;
+    m_Listeners   = new HashSet<>(listeners);
+    m_Console     = !CommandUtils.isConsoleRedirected(m_Listeners);
+    m_Lines       = new ArrayList<>();
+    m_StdOut      = new ArrayList<>();
+    m_OutputEvent = new OutputEvent(this, prefix.trim());
+  }
+
+  /**
+   * Passes on the line.
+   *
+   * @param line	the line to output
+   * @param stdout	whether stdout or stderr
+   */
+  protected void output(String line, boolean stdout) {
+    if (m_Console) {
+      if (stdout)
+	System.out.println(line);
+      else
+	System.err.println(line);
+    }
+    if (!m_Listeners.isEmpty())
+      OutputEvent.notifyListeners(m_Listeners, m_OutputEvent, line, stdout);
+  }
+
+  /**
+   * Gets called when output was produced.
+   *
+   * @param line	the line to process
+   * @param stdout	whether stdout or stderr
+   */
+  @Override
+  public void outputOccurred(String line, boolean stdout) {
+    if (m_Group) {
+      synchronized (m_Lines) {
+	m_Lines.add(line);
+	m_StdOut.add(stdout);
+      }
+    }
+    else {
+      synchronized (LOCK) {
+	output(m_Prefix + line, stdout);
+      }
+    }
+  }
+
+  /**
+   * Passes on any buffered output.
+   */
+  public void flush() {
+    int		i;
+
+    synchronized (m_Lines) {
+      synchronized (LOCK) {
+	for (i = 0; i < m_Lines.size(); i++)
+	  output(m_Lines.get(i), m_StdOut.get(i));
+      }
+      m_Lines.clear();
+      m_StdOut.clear();
+    }
+  }
+}
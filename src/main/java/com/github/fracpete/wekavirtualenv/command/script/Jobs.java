@@ -0,0 +1,272 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Jobs.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import com.github.fracpete.wekavirtualenv.command.AbstractLaunchCommand;
+import com.github.fracpete.wekavirtualenv.command.Command;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Engine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages the jobs running in the background of a script.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Jobs {
+
+  /**
+   * A single background job.
+   */
+  public static class Job {
+
+    /** the ID of the job. */
+    protected String m_ID;
+
+    /** the engine executing the command. */
+    protected Engine m_Engine;
+
+    /** the captured output, null if not captured. */
+    protected StringBuilder m_Output;
+
+    /** the thread running the job. */
+    protected Thread m_Thread;
+
+    /** the exit status, null while running. */
+    protected volatile Integer m_Status;
+
+    /**
+     * Initializes the job.
+     *
+     * @param id	the ID of the job
+     * @param engine	the engine executing the command
+     * @param output	the buffer for the captured output, null if not captured
+     */
+    public Job(String id, Engine engine, StringBuilder output) {
+      m_ID     = id;
+      m_Engine = engine;
+      m_Output = output;
+    }
+
+    /**
+     * Returns the ID of the job.
+     *
+     * @return		the ID
+     */
+    public String getID() {
+      return m_ID;
+    }
+
+    /**
+     * Returns whether the job is still running.
+     *
+     * @return		true if running
+     */
+    public boolean isRunning() {
+      return (m_Status == null);
+    }
+
+    /**
+     * Returns the exit status of the job: the exit code of the launched
+     * process or 0/1 for success/failure of other commands.
+     *
+     * @return		the status, null if still running
+     */
+    public Integer getStatus() {
+      return m_Status;
+    }
+
+    /**
+     * Returns the captured output.
+     *
+     * @return		the output, null if not captured
+     */
+    public String getOutput() {
+      if (m_Output == null)
+	return null;
+      synchronized (m_Output) {
+	return m_Output.toString();
+      }
+    }
+
+    /**
+     * Executes the job. The status always gets set, even if an error
+     * occurs, so that nobody waits forever for the job.
+     */
+    protected void execute() {
+      boolean	success;
+      Command	cmd;
+      int	status;
+
+      status = 1;
+      try {
+	success = m_Engine.execute();
+	cmd     = m_Engine.getLastCommand();
+	status  = success ? 0 : 1;
+	if (success && (cmd instanceof AbstractLaunchCommand))
+	  status = ((AbstractLaunchCommand) cmd).getExitCode();
+      }
+      catch (Exception e) {
+	status = 1;
+      }
+      finally {
+	m_Status = status;
+      }
+    }
+
+    /**
+     * Stops the job.
+     */
+    public void destroy() {
+      m_Engine.destroy();
+    }
+  }
+
+  /** the jobs. */
+  protected Map<String,Job> m_Jobs;
+
+  /** whether the jobs got stopped. */
+  protected boolean m_Stopped;
+
+  /**
+   * Initializes the jobs.
+   */
+  public Jobs() {
+    m_Jobs = new LinkedHashMap<>();
+  }
+
+  /**
+   * Returns the number of running jobs.
+   *
+   * @return		the number
+   */
+  public synchronized int running() {
+    int		result;
+
+    result = 0;
+    for (Job job: m_Jobs.values()) {
+      if (job.isRunning())
+	result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Starts the job in the background. Blocks as long as the maximum
+   * number of running jobs has been reached.
+   *
+   * @param job		the job to start
+   * @param maxJobs	the maximum number of jobs running at the same time
+   * @return		null if successfully started, otherwise error message
+   */
+  public synchronized String start(final Job job, int maxJobs) {
+    if (m_Jobs.containsKey(job.getID()) && m_Jobs.get(job.getID()).isRunning())
+      return "Job already running: " + job.getID();
+
+    while (!m_Stopped && (running() >= maxJobs)) {
+      try {
+	wait();
+      }
+      catch (InterruptedException e) {
+	return "Interrupted while waiting for a job to finish!";
+      }
+    }
+    if (m_Stopped)
+      return "Jobs were stopped!";
+
+    m_Jobs.put(job.getID(), job);
+    job.m_Thread = new Thread(() -> {
+      try {
+	job.execute();
+      }
+      finally {
+	synchronized (Jobs.this) {
+	  Jobs.this.notifyAll();
+	}
+      }
+    }, "spawn-" + job.getID());
+    job.m_Thread.start();
+
+    return null;
+  }
+
+  /**
+   * Returns the IDs of all the jobs (running or finished, but not yet
+   * waited for).
+   *
+   * @return		the IDs
+   */
+  public synchronized List<String> ids() {
+    return new ArrayList<>(m_Jobs.keySet());
+  }
+
+  /**
+   * Waits for the job to finish and removes it.
+   *
+   * @param id		the ID of the job
+   * @return		the job, null if unknown
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public synchronized Job waitFor(String id) throws InterruptedException {
+    Job		result;
+
+    result = m_Jobs.get(id);
+    if (result == null)
+      return null;
+    while (result.isRunning())
+      wait();
+    m_Jobs.remove(id);
+
+    return result;
+  }
+
+  /**
+   * Waits for all the jobs to finish and removes them.
+   *
+   * @return		the jobs
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public synchronized List<Job> waitForAll() throws InterruptedException {
+    List<Job>	result;
+
+    result = new ArrayList<>();
+    for (String id: ids())
+      result.add(waitFor(id));
+
+    return result;
+  }
+
+  /**
+   * Stops all running jobs.
+   */
+  public synchronized void destroy() {
+    m_Stopped = true;
+    for (Job job: m_Jobs.values()) {
+      if (job.isRunning())
+	job.destroy();
+    }
+    notifyAll();
+  }
+}
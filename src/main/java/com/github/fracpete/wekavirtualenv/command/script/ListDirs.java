@@ -22,11 +22,13 @@ package com.github.fracpete.wekavirtualenv.command.script;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+import com.github.fracpete.wekavirtualenv.core.DirectoryWalker;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * Locates directories in specified directory and stores them in a variable.
@@ -34,7 +36,8 @@ import java.util.regex.Pattern;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class ListDirs
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -54,7 +57,8 @@ public class ListDirs
   @Override
   public String getHelp() {
     return "Locates directories in specified directory and stores them in a variable.\n"
-      + "Search can be recursive, directory names (excl parent path) can be matched again regular expression.";
+      + "Search can be recursive, directory names (excl parent path) can be matched again regular expression.\n"
+      + "The search can also be performed lazily, whenever the variable gets iterated.";
   }
 
   /**
@@ -79,6 +83,28 @@ public class ListDirs
       .dest("regexp")
       .help("the regular expression to match directory names against.")
       .setDefault(".*");
+    result.addOption("--max-depth")
+      .dest("maxdepth")
+      .help("the maximum depth to descend to when searching recursively (1 = only the directory itself), -1 for unlimited")
+      .type(Type.INTEGER)
+      .setDefault(-1);
+    result.addOption("--glob")
+      .dest("glob")
+      .help("the glob pattern to match directory names against (e.g., '*.arff'), used instead of the regular expression.");
+    result.addOption("--limit")
+      .dest("limit")
+      .help("the maximum number of directories to locate, -1 for unlimited")
+      .type(Type.INTEGER)
+      .setDefault(-1);
+    result.addOption("--threads")
+      .dest("threads")
+      .help("the number of threads to use for searching sub-directories in parallel, <= 0 for number of processors")
+      .type(Type.INTEGER)
+      .setDefault(0);
+    result.addOption("--lazy")
+      .dest("lazy")
+      .help("whether to store a lazily evaluated variable, which searches the directory only when iterated (e.g., with foreach)")
+      .argument(false);
     result.addOption("--dest")
       .dest("dest")
       .help("the name of the variable to store the result in.")
@@ -87,35 +113,6 @@ public class ListDirs
     return result;
   }
 
-  /**
-   * Searches the specified directory and adds the matching dirs to the list.
-   *
-   * @param dir		the directory to search
-   * @param recursive	true if to search recursively
-   * @param regexp	the pattern to match against, null to match all
-   * @param dirs	the list of dirs to add matches to
-   */
-  protected void search(File dir, boolean recursive, Pattern regexp, List<String> dirs) {
-    File[]	current;
-
-    current = dir.listFiles();
-    for (File file: current) {
-      if (file.getName().equals(".") || file.getName().equals(".."))
-        continue;
-
-      // go deeper?
-      if (file.isDirectory()) {
-        if (regexp == null)
-          dirs.add(file.getAbsolutePath());
-        else if (regexp.matcher(file.getName()).matches())
-          dirs.add(file.getAbsolutePath());
-
-        if (recursive)
-          search(file, recursive, regexp, dirs);
-      }
-    }
-  }
-
   /**
    * Evaluates the script command.
    *
@@ -126,12 +123,13 @@ public class ListDirs
   @Override
   protected boolean evalCommand(Namespace ns, String[] options) {
     File		dir;
-    List<String>	files;
+    List<String>	directories;
     String 		regexp;
-    Pattern 		pattern;
-    boolean		recursive;
+    String 		glob;
+    PathMatcher		matcher;
+    int			maxDepth;
+    DirectoryWalker	walker;
 
-    files = new ArrayList<>();
     dir   = new File(ns.getString("dir"));
     if (!dir.exists()) {
       addError("Search directory does not exist: " + dir);
@@ -142,13 +140,25 @@ public class ListDirs
       return false;
     }
 
-    recursive = ns.getBoolean("recursive");
+    maxDepth = 1;
+    if (ns.getBoolean("recursive"))
+      maxDepth = (ns.getInt("maxdepth") > 0) ? ns.getInt("maxdepth") : -1;
 
-    pattern = null;
+    matcher = null;
     regexp  = ns.getString("regexp");
-    if (!regexp.equals(".*")) {
+    glob    = ns.getString("glob");
+    if (glob != null) {
       try {
-        pattern = Pattern.compile(regexp);
+	matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+      }
+      catch (Exception e) {
+	addError("Failed to parse glob: " + glob, e);
+	return false;
+      }
+    }
+    else if (!regexp.equals(".*")) {
+      try {
+	matcher = FileSystems.getDefault().getPathMatcher("regex:" + regexp);
       }
       catch (Exception e) {
         addError("Failed to parse regular expression: " + regexp, e);
@@ -156,9 +166,17 @@ public class ListDirs
       }
     }
 
-    search(dir, recursive, pattern, files);
+    walker = new DirectoryWalker(true, maxDepth, matcher, ns.getInt("limit"), ns.getInt("threads"));
+
+    if (ns.getBoolean("lazy")) {
+      getContext().getVariables().set(ns.getString("dest"), new StreamVariable(
+	"directories in " + dir, () -> walker.stream(dir.toPath())));
+      return true;
+    }
+
+    directories = walker.walk(dir.toPath());
 
-    getContext().getVariables().set(ns.getString("dest"), files.toArray(new String[files.size()]));
+    getContext().getVariables().set(ns.getString("dest"), directories.toArray(new String[directories.size()]));
 
     return true;
   }
@@ -22,11 +22,13 @@ package com.github.fracpete.wekavirtualenv.command.script;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+import com.github.fracpete.wekavirtualenv.core.DirectoryWalker;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * Locates files in specified directory and stores them in a variable.
@@ -34,7 +36,8 @@ import java.util.regex.Pattern;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class ListFiles
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -54,7 +57,8 @@ public class ListFiles
   @Override
   public String getHelp() {
     return "Locates files in specified directory and stores them in a variable.\n"
-      + "Search can be recursive, file names (excl path) can be matched again regular expression.";
+      + "Search can be recursive, file names (excl path) can be matched again regular expression.\n"
+      + "The search can also be performed lazily, whenever the variable gets iterated.";
   }
 
   /**
@@ -79,6 +83,28 @@ public class ListFiles
       .dest("regexp")
       .help("the regular expression to match file names against.")
       .setDefault(".*");
+    result.addOption("--max-depth")
+      .dest("maxdepth")
+      .help("the maximum depth to descend to when searching recursively (1 = only the directory itself), -1 for unlimited")
+      .type(Type.INTEGER)
+      .setDefault(-1);
+    result.addOption("--glob")
+      .dest("glob")
+      .help("the glob pattern to match file names against (e.g., '*.arff'), used instead of the regular expression.");
+    result.addOption("--limit")
+      .dest("limit")
+      .help("the maximum number of files to locate, -1 for unlimited")
+      .type(Type.INTEGER)
+      .setDefault(-1);
+    result.addOption("--threads")
+      .dest("threads")
+      .help("the number of threads to use for searching sub-directories in parallel, <= 0 for number of processors")
+      .type(Type.INTEGER)
+      .setDefault(0);
+    result.addOption("--lazy")
+      .dest("lazy")
+      .help("whether to store a lazily evaluated variable, which searches the directory only when iterated (e.g., with foreach)")
+      .argument(false);
     result.addOption("--dest")
       .dest("dest")
       .help("the name of the variable to store the result in.")
@@ -87,35 +113,6 @@ public class ListFiles
     return result;
   }
 
-  /**
-   * Searches the specified directory and adds the matching files to the list.
-   *
-   * @param dir		the directory to search
-   * @param recursive	true if to search recursively
-   * @param regexp	the pattern to match against, null to match all
-   * @param files	the list of files to add matches to
-   */
-  protected void search(File dir, boolean recursive, Pattern regexp, List<String> files) {
-    File[]	current;
-
-    current = dir.listFiles();
-    for (File file: current) {
-      if (file.getName().equals(".") || file.getName().equals(".."))
-        continue;
-
-      // go deeper?
-      if (file.isDirectory() && recursive)
-        search(file, recursive, regexp, files);
-
-      if (file.isFile()) {
-        if (regexp == null)
-          files.add(file.getAbsolutePath());
-        else if (regexp.matcher(file.getName()).matches())
-          files.add(file.getAbsolutePath());
-      }
-    }
-  }
-
   /**
    * Evaluates the script command.
    *
@@ -128,10 +125,11 @@ public class ListFiles
     File		dir;
     List<String>	files;
     String 		regexp;
-    Pattern 		pattern;
-    boolean		recursive;
+    String 		glob;
+    PathMatcher		matcher;
+    int			maxDepth;
+    DirectoryWalker	walker;
 
-    files = new ArrayList<>();
     dir   = new File(ns.getString("dir"));
     if (!dir.exists()) {
       addError("Search directory does not exist: " + dir);
@@ -142,21 +140,41 @@ public class ListFiles
       return false;
     }
 
-    recursive = ns.getBoolean("recursive");
+    maxDepth = 1;
+    if (ns.getBoolean("recursive"))
+      maxDepth = (ns.getInt("maxdepth") > 0) ? ns.getInt("maxdepth") : -1;
 
-    pattern = null;
+    matcher = null;
     regexp  = ns.getString("regexp");
-    if (!regexp.equals(".*")) {
+    glob    = ns.getString("glob");
+    if (glob != null) {
       try {
-        pattern = Pattern.compile(regexp);
+	matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
       }
       catch (Exception e) {
-        addError("Failed to parse regular expression: " + regexp);
+	addError("Failed to parse glob: " + glob, e);
+	return false;
+      }
+    }
+    else if (!regexp.equals(".*")) {
+      try {
+	matcher = FileSystems.getDefault().getPathMatcher("regex:" + regexp);
+      }
+      catch (Exception e) {
+        addError("Failed to parse regular expression: " + regexp, e);
         return false;
       }
     }
 
-    search(dir, recursive, pattern, files);
+    walker = new DirectoryWalker(false, maxDepth, matcher, ns.getInt("limit"), ns.getInt("threads"));
+
+    if (ns.getBoolean("lazy")) {
+      getContext().getVariables().set(ns.getString("dest"), new StreamVariable(
+	"files in " + dir, () -> walker.stream(dir.toPath())));
+      return true;
+    }
+
+    files = walker.walk(dir.toPath());
 
     getContext().getVariables().set(ns.getString("dest"), files.toArray(new String[files.size()]));
 
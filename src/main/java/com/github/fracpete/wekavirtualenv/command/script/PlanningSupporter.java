@@ -0,0 +1,46 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PlanningSupporter.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Block;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Planner;
+
+/**
+ * Interface for script commands that execute instructions themselves
+ * (e.g., loops) and therefore need to plan them when planning a script.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface PlanningSupporter
+  extends ScriptCommand {
+
+  /**
+   * Plans the execution of the command without launching any processes.
+   *
+   * @param ns		the namespace of the parsed options, null if no options to parse
+   * @param options	additional command-line options
+   * @param block	the nested block for the command, if any
+   * @param planner	the planner to use for the instructions
+   * @return		the estimated time in msec, -1 if failed to plan
+   */
+  public long plan(Namespace ns, String[] options, Block block, Planner planner);
+}
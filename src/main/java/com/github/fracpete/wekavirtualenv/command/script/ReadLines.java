@@ -25,8 +25,9 @@ import com.github.fracpete.simpleargparse4j.Namespace;
 
 import java.io.File;
 import java.nio.file.Files;
-import java.util.List;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Reads all the lines in a file.
@@ -34,7 +35,8 @@ import java.util.regex.Pattern;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class ReadLines
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -54,7 +56,8 @@ public class ReadLines
   @Override
   public String getHelp() {
     return "Reads all the lines in a text file into a variable.\n"
-      + "Can skip empty lines and lines that match regular expression.";
+      + "Can skip empty lines and lines that match regular expression.\n"
+      + "The lines can also be read lazily, keeping only the current line in memory.";
   }
 
   /**
@@ -83,6 +86,10 @@ public class ReadLines
       .dest("invertmatching")
       .help("whether to invert the matching sense of the regular expression")
       .argument(false);
+    result.addOption("--lazy")
+      .dest("lazy")
+      .help("whether to store a lazily evaluated variable, which reads the file only when iterated (e.g., with foreach)")
+      .argument(false);
     result.addOption("--dest")
       .dest("dest")
       .help("the name of the var to store the lines in.")
@@ -100,14 +107,13 @@ public class ReadLines
    */
   @Override
   protected boolean evalCommand(Namespace ns, String[] options) {
-    File		file;
-    String 		regexp;
-    Pattern 		pattern;
-    boolean  		skipEmpty;
-    boolean		invertMatching;
-    List<String>	lines;
-    int			i;
-    boolean		keep;
+    final File			file;
+    String 			regexp;
+    final Pattern 		pattern;
+    final boolean  		skipEmpty;
+    final boolean		invertMatching;
+    final Predicate<String>	keep;
+    String[]			lines;
 
     file = new File(ns.getString("file"));
     if (!file.exists()) {
@@ -122,7 +128,6 @@ public class ReadLines
     skipEmpty      = ns.getBoolean("skipempty");
     invertMatching = ns.getBoolean("invertmatching");
 
-    pattern = null;
     regexp  = ns.getString("regexp");
     if (!regexp.equals(".*")) {
       try {
@@ -133,36 +138,34 @@ public class ReadLines
         return false;
       }
     }
+    else {
+      pattern = null;
+    }
+
+    keep = (String line) -> {
+      if (skipEmpty && line.trim().isEmpty())
+	return false;
+      if (pattern != null)
+	return (pattern.matcher(line).matches() != invertMatching);
+      return true;
+    };
+
+    if (ns.getBoolean("lazy")) {
+      getContext().getVariables().set(ns.getString("dest"), new StreamVariable(
+	"lines of " + file, () -> Files.lines(file.toPath()).filter(keep)));
+      return true;
+    }
 
     // read
-    try {
-      lines = Files.readAllLines(file.toPath());
+    try (Stream<String> stream = Files.lines(file.toPath())) {
+      lines = stream.filter(keep).toArray(String[]::new);
     }
     catch (Exception e) {
       addError("Failed to read: " + file, e);
       return false;
     }
 
-    // process
-    i = 0;
-    while (i < lines.size()) {
-      keep = true;
-      if (skipEmpty && lines.get(i).trim().isEmpty()) {
-        keep = false;
-      }
-      if ((pattern != null)) {
-        if (!invertMatching && !pattern.matcher(lines.get(i)).matches())
-          keep = false;
-        else if (invertMatching && pattern.matcher(lines.get(i)).matches())
-          keep = false;
-      }
-      if (!keep)
-        lines.remove(i);
-      else
-	i++;
-    }
-
-    getContext().getVariables().set(ns.getString("dest"), lines.toArray(new String[lines.size()]));
+    getContext().getVariables().set(ns.getString("dest"), lines);
 
     return true;
   }
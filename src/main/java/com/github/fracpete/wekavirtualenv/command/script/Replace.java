@@ -22,6 +22,10 @@ package com.github.fracpete.wekavirtualenv.command.script;
 
 import com.github.fracpete.simpleargparse4j.ArgumentParser;
 import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.CommandUtils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Performs string replacement, simple or regular expression based.
@@ -29,7 +33,8 @@ import com.github.fracpete.simpleargparse4j.Namespace;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class Replace
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -103,13 +108,24 @@ public class Replace
     String 	replace;
     boolean 	regExp;
     boolean 	all;
+    boolean	literal;
     Object	value;
     String[]	lines;
     boolean	array;
     String[]	result;
     int		i;
+    Matcher	matcher;
 
     value = getContext().getVariables().get(ns.getString("str"));
+    if (value instanceof StreamVariable) {
+      try {
+	value = ((StreamVariable) value).toArray();
+      }
+      catch (Exception e) {
+	addError("Failed to read elements of variable: " + ns.getString("str"), e);
+	return false;
+      }
+    }
     array = (value instanceof String[]);
     if (!array)
       lines = new String[]{(String) value};
@@ -118,15 +134,36 @@ public class Replace
     find    = ns.getString("find");
     replace = ns.getString("replace");
     regExp  = ns.getBoolean("regexp");
-    all     = regExp && ns.getBoolean("all");
+    all     = !regExp || ns.getBoolean("all");
+    matcher = null;
+    if (regExp) {
+      literal = CommandUtils.isLiteral(find)
+	&& (replace.indexOf('$') == -1) && (replace.indexOf('\\') == -1);
+      if (!literal) {
+	try {
+	  matcher = Pattern.compile(find).matcher("");
+	}
+	catch (Exception e) {
+	  addError("Failed to parse regular expression: " + find, e);
+	  return false;
+	}
+      }
+    }
+    else {
+      literal = !find.isEmpty();
+    }
 
     result = new String[lines.length];
     for (i = 0; i < lines.length; i++) {
-      if (regExp) {
+      if (literal) {
+	result[i] = CommandUtils.replaceLiteral(lines[i], find, replace, all);
+      }
+      else if (matcher != null) {
+	matcher.reset(lines[i]);
 	if (all)
-	  result[i] = lines[i].replaceAll(find, replace);
+	  result[i] = matcher.replaceAll(replace);
 	else
-	  result[i] = lines[i].replaceFirst(find, replace);
+	  result[i] = matcher.replaceFirst(replace);
       }
       else {
 	result[i] = lines[i].replace(find, replace);
@@ -31,7 +31,8 @@ import nz.ac.waikato.cms.core.FileUtils;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class ReplaceExt
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -29,7 +29,8 @@ import nz.ac.waikato.cms.jenericcmdline.core.OptionUtils;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class SetVar
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
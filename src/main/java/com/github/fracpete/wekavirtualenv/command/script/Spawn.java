@@ -0,0 +1,182 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Spawn.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.simpleargparse4j.Option.Type;
+import com.github.fracpete.wekavirtualenv.command.ConsoleOutputListener;
+import com.github.fracpete.wekavirtualenv.command.OutputListener;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Block;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Engine;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Line;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.Planner;
+import com.github.fracpete.wekavirtualenv.command.script.instructions.ScopedContext;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Executes a command in the background.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Spawn
+  extends AbstractScriptCommand
+  implements PlanningSupporter, FilterForwarder {
+
+  /**
+   * The name of the command (used on the commandline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "spawn";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Executes the command in the background, use 'wait' to wait for it to finish.\n"
+      + "The command gets its own copy of the variables. Any output filters get applied to the command.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser
+   */
+  @Override
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = new ArgumentParser(getName());
+    result.addOption("--id")
+      .dest("id")
+      .help("the ID of the job, used by 'wait' and as prefix for the variables '<id>_status' and '<id>_output'.")
+      .required(true);
+    result.addOption("--max-jobs")
+      .dest("maxjobs")
+      .help("the maximum number of jobs running at the same time (blocks until a job finishes), <= 0 for number of processors.")
+      .type(Type.INTEGER)
+      .setDefault(0);
+    result.addOption("--capture")
+      .dest("capture")
+      .help("whether to capture the output in the '<id>_output' variable rather than outputting it.")
+      .argument(false);
+    result.addOption("--verbose")
+      .dest("verbose")
+      .help("in verbose mode, commands to be executed are output on stderr")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Returns whether the command utilizes additional arguments that get passed on.
+   *
+   * @return		true if additional options
+   */
+  @Override
+  public boolean supportsAdditionalArguments() {
+    return true;
+  }
+
+  /**
+   * Plans the command without launching any processes. The command runs
+   * in the background, i.e., its launches get counted but its time does not
+   * add to the runtime of the script.
+   *
+   * @param ns		the namespace of the parsed options
+   * @param options	additional command-line options
+   * @param block	the nested block for the command, if any
+   * @param planner	the planner to use for the instructions
+   * @return		the estimated time in msec, -1 if failed to plan
+   */
+  @Override
+  public long plan(Namespace ns, String[] options, Block block, Planner planner) {
+    if (options.length == 0) {
+      addError("No command to execute supplied!");
+      return -1;
+    }
+    return planner.spawn(options, new ScopedContext(getContext()));
+  }
+
+  /**
+   * Evaluates the script command.
+   *
+   * @param ns		the namespace
+   * @param options	the options
+   * @return		true if successful
+   */
+  @Override
+  protected boolean evalCommand(Namespace ns, String[] options) {
+    String		id;
+    final StringBuilder	output;
+    Set<OutputListener>	listeners;
+    Block		block;
+    Engine		engine;
+    int			maxJobs;
+    String		msg;
+
+    if (options.length == 0) {
+      addError("No command to execute supplied!");
+      return false;
+    }
+
+    id        = ns.getString("id");
+    listeners = new HashSet<>();
+    if (ns.getBoolean("capture")) {
+      output = new StringBuilder();
+      listeners.add((ConsoleOutputListener) (String line, boolean stdout) -> {
+	synchronized (output) {
+	  output.append(line).append("\n");
+	}
+      });
+    }
+    else {
+      output = null;
+      listeners.add(new IterationOutput("[" + id + "] ", false, m_OutputListeners));
+    }
+
+    block = new Block(null, 0);
+    // the options are already expanded
+    block.add(new Line(options));
+    engine = new Engine(new ScopedContext(getContext()), block, ns.getBoolean("verbose"), listeners);
+
+    maxJobs = ns.getInt("maxjobs");
+    if (maxJobs <= 0)
+      maxJobs = Runtime.getRuntime().availableProcessors();
+
+    msg = getContext().getJobs().start(new Jobs.Job(id, engine, output), maxJobs);
+    if (msg != null) {
+      addError(msg);
+      return false;
+    }
+
+    return true;
+  }
+}
@@ -29,7 +29,8 @@ import com.github.fracpete.simpleargparse4j.Namespace;
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
 public class Split
-  extends AbstractScriptCommand {
+  extends AbstractScriptCommand
+  implements VariablesScriptCommand {
 
   /**
    * The name of the command (used on the commandline).
@@ -95,7 +96,7 @@ public class Split
       addError("Variable not present: " + ns.getString("str"));
       return false;
     }
-    if (value instanceof String[]) {
+    if ((value instanceof String[]) || (value instanceof StreamVariable)) {
       addError("Variable is already an array: " + ns.getString("str"));
       return false;
     }
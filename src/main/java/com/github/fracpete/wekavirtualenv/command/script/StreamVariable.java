@@ -0,0 +1,106 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StreamVariable.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+/**
+ * Variable whose elements are not held in memory, but get produced lazily
+ * (e.g., the lines of a file) whenever the variable gets iterated.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class StreamVariable {
+
+  /**
+   * Interface for opening a new stream of elements.
+   */
+  public interface Source {
+
+    /**
+     * Opens a new stream of elements.
+     *
+     * @return		the stream, must be closed by the caller
+     * @throws IOException	if opening fails
+     */
+    public Stream<String> open() throws IOException;
+  }
+
+  /** the description of the elements. */
+  protected String m_Description;
+
+  /** the source of the elements. */
+  protected Source m_Source;
+
+  /**
+   * Initializes the variable.
+   *
+   * @param description	the description of the elements, e.g., the file
+   * @param source	the source of the elements
+   */
+  public StreamVariable(String description, Source source) {
+    super();
+    m_Description = description;
+    m_Source      = source;
+  }
+
+  /**
+   * Returns the description of the elements.
+   *
+   * @return		the description
+   */
+  public String getDescription() {
+    return m_Description;
+  }
+
+  /**
+   * Opens a new stream of the elements.
+   *
+   * @return		the stream, must be closed by the caller
+   * @throws IOException	if opening fails
+   */
+  public Stream<String> open() throws IOException {
+    return m_Source.open();
+  }
+
+  /**
+   * Reads all the elements into an array.
+   *
+   * @return		the elements
+   * @throws IOException	if reading fails
+   */
+  public String[] toArray() throws IOException {
+    try (Stream<String> stream = open()) {
+      return stream.toArray(String[]::new);
+    }
+  }
+
+  /**
+   * Returns the description of the variable.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "<" + m_Description + ">";
+  }
+}
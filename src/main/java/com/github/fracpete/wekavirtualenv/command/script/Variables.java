@@ -22,12 +22,20 @@ package com.github.fracpete.wekavirtualenv.command.script;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Manages variables.
+ * Manages variables. Variables can be nested in a parent scope: the scope
+ * falls back on the parent's values, but changes are local to the scope
+ * and leave the parent untouched (copy-on-write). A scope only allocates
+ * storage once a variable gets set or removed, making scopes cheap to
+ * create, e.g., for each iteration of a loop. Values can be passed on to
+ * the parent scope explicitly using {@link #export(String, boolean)}.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  */
@@ -45,14 +53,247 @@ public class Variables {
   /** the closing of an environment variable. */
   public final static String ENV_END = "}";
 
-  /** the variables. */
-  protected Map<String,Object> m_Variables;
+  /** the maximum number of nested expansions. */
+  public final static int MAX_DEPTH = 100;
+
+  /** the maximum number of cached templates. */
+  public final static int MAX_TEMPLATES = 1000;
+
+  /**
+   * A string broken up into literal parts and variable/environment
+   * placeholders.
+   */
+  protected static class Template {
+
+    /** the literal parts (one more than placeholders). */
+    protected String[] m_Literals;
+
+    /** the names of the placeholders. */
+    protected String[] m_Names;
+
+    /** whether the placeholders are environment variables. */
+    protected boolean[] m_Env;
+
+    /**
+     * Parses the string.
+     *
+     * @param s		the string to parse
+     */
+    public Template(String s) {
+      List<String>	literals;
+      List<String>	names;
+      List<Boolean>	env;
+      int		pos;
+      int		start;
+      int		var;
+      int		end;
+      int		i;
+
+      literals = new ArrayList<>();
+      names    = new ArrayList<>();
+      env      = new ArrayList<>();
+      pos      = 0;
+      start    = 0;
+      while (pos < s.length()) {
+	var = s.indexOf(VAR_START, pos);
+	i   = s.indexOf(ENV_START, pos);
+	if ((var == -1) || ((i > -1) && (i < var)))
+	  var = i;
+	if (var == -1)
+	  break;
+	end = s.indexOf(VAR_END, var + VAR_START.length());
+	if (end == -1)
+	  break;
+	// innermost placeholder, e.g., "${a${b}}"
+	var = Math.max(var, Math.max(s.lastIndexOf(VAR_START, end), s.lastIndexOf(ENV_START, end)));
+	literals.add(s.substring(start, var));
+	names.add(s.substring(var + VAR_START.length(), end));
+	env.add(s.startsWith(ENV_START, var));
+	pos   = end + VAR_END.length();
+	start = pos;
+      }
+      literals.add(s.substring(start));
+
+      m_Literals = literals.toArray(new String[literals.size()]);
+      m_Names    = names.toArray(new String[names.size()]);
+      m_Env      = new boolean[env.size()];
+      for (i = 0; i < m_Env.length; i++)
+	m_Env[i] = env.get(i);
+    }
+
+    /**
+     * Appends the placeholder as is.
+     *
+     * @param buffer	the buffer to append to
+     * @param index	the index of the placeholder
+     */
+    protected void appendPlaceholder(StringBuilder buffer, int index) {
+      buffer.append(m_Env[index] ? ENV_START : VAR_START);
+      buffer.append(m_Names[index]);
+      buffer.append(m_Env[index] ? ENV_END : VAR_END);
+    }
+
+    /**
+     * Replaces the variable placeholders with the string values of the
+     * variables, all other placeholders are kept.
+     *
+     * @param variables	the variables to use
+     * @return		the expanded string
+     */
+    public String expandVariables(Variables variables) {
+      StringBuilder	result;
+      Object		val;
+      int		i;
+
+      result = new StringBuilder();
+      for (i = 0; i < m_Names.length; i++) {
+	result.append(m_Literals[i]);
+	val = m_Env[i] ? null : variables.get(m_Names[i]);
+	if (val instanceof String)
+	  result.append((String) val);
+	else
+	  appendPlaceholder(result, i);
+      }
+      result.append(m_Literals[m_Literals.length - 1]);
+
+      return result.toString();
+    }
+
+    /**
+     * Replaces the environment variable placeholders with their values, all
+     * other placeholders are kept.
+     *
+     * @return		the expanded string
+     */
+    public String expandEnvironment() {
+      StringBuilder	result;
+      String		val;
+      int		i;
+
+      result = new StringBuilder();
+      for (i = 0; i < m_Names.length; i++) {
+	result.append(m_Literals[i]);
+	val = m_Env[i] ? System.getenv(m_Names[i]) : null;
+	if (val != null)
+	  result.append(val);
+	else
+	  appendPlaceholder(result, i);
+      }
+      result.append(m_Literals[m_Literals.length - 1]);
+
+      return result.toString();
+    }
+  }
+
+  /** the cache of parsed templates. */
+  protected final static Map<String,Template> TEMPLATES = new LinkedHashMap<String,Template>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String,Template> eldest) {
+      return (size() > MAX_TEMPLATES);
+    }
+  };
+
+  /** the variables, null if none set yet. */
+  protected volatile Map<String,Object> m_Variables;
+
+  /** the parent scope, null if none. */
+  protected Variables m_Parent;
+
+  /** the variables of the parent scope that got removed in this scope, null if none removed yet. */
+  protected volatile Set<String> m_Removed;
 
   /**
    * Initializes the variables.
    */
   public Variables() {
-    m_Variables = new HashMap<>();
+    this(null);
+  }
+
+  /**
+   * Initializes the variables as scope of the parent.
+   *
+   * @param parent	the parent scope, null if none
+   */
+  public Variables(Variables parent) {
+    m_Variables = null;
+    m_Parent    = parent;
+    m_Removed   = null;
+  }
+
+  /**
+   * Returns the parent scope.
+   *
+   * @return		the parent, null if none
+   */
+  public Variables getParent() {
+    return m_Parent;
+  }
+
+  /**
+   * Creates a new scope with this object as parent.
+   *
+   * @return		the new scope
+   */
+  public Variables newScope() {
+    return new Variables(this);
+  }
+
+  /**
+   * Returns the storage for the variables of this scope, allocates it if
+   * necessary.
+   *
+   * @return		the storage
+   */
+  protected Map<String,Object> variables() {
+    if (m_Variables == null) {
+      synchronized (this) {
+	if (m_Variables == null)
+	  m_Variables = new ConcurrentHashMap<>();
+      }
+    }
+    return m_Variables;
+  }
+
+  /**
+   * Returns the removed variables of this scope, allocates the set if
+   * necessary.
+   *
+   * @return		the removed variables
+   */
+  protected Set<String> removed() {
+    if (m_Removed == null) {
+      synchronized (this) {
+	if (m_Removed == null)
+	  m_Removed = ConcurrentHashMap.newKeySet();
+      }
+    }
+    return m_Removed;
+  }
+
+  /**
+   * Checks whether the variable got removed in this scope.
+   *
+   * @param name	the name of the variable
+   * @return		true if removed
+   */
+  protected boolean isRemoved(String name) {
+    return (m_Removed != null) && m_Removed.contains(name);
+  }
+
+  /**
+   * Stores the value in this scope.
+   *
+   * @param name	the name of the variable
+   * @param value	the value
+   */
+  protected void put(String name, Object value) {
+    if (value == null) {
+      remove(name);
+      return;
+    }
+    variables().put(name, value);
+    if (m_Removed != null)
+      m_Removed.remove(name);
   }
 
   /**
@@ -62,7 +303,7 @@ public class Variables {
    * @param value	the value
    */
   public void set(String name, String value) {
-    m_Variables.put(name, value);
+    put(name, value);
   }
 
   /**
@@ -72,7 +313,17 @@ public class Variables {
    * @param value	the value
    */
   public void set(String name, String[] value) {
-    m_Variables.put(name, value);
+    put(name, value);
+  }
+
+  /**
+   * Sets the variable and its lazily produced value.
+   *
+   * @param name	the name of the variable
+   * @param value	the value
+   */
+  public void set(String name, StreamVariable value) {
+    put(name, value);
   }
 
   /**
@@ -81,7 +332,41 @@ public class Variables {
    * @param name	the name of the variable
    */
   public void remove(String name) {
-    m_Variables.remove(name);
+    if (m_Variables != null)
+      m_Variables.remove(name);
+    if ((m_Parent != null) && m_Parent.has(name))
+      removed().add(name);
+  }
+
+  /**
+   * Passes on the current value of the variable to the parent scope (or
+   * the outermost scope), making it visible once this scope is discarded.
+   * If the variable was removed in this scope, it gets removed from the
+   * parent scope as well.
+   *
+   * @param name	the name of the variable
+   * @param global	whether to pass it on to the outermost scope rather than the parent
+   * @return		false if there is no parent scope
+   */
+  public boolean export(String name, boolean global) {
+    Object	value;
+    Variables	target;
+
+    if (m_Parent == null)
+      return false;
+
+    value  = get(name);
+    target = this;
+    do {
+      target = target.getParent();
+      if (value == null)
+	target.remove(name);
+      else
+	target.put(name, value);
+    }
+    while (global && (target.getParent() != null));
+
+    return true;
   }
 
   /**
@@ -91,7 +376,11 @@ public class Variables {
    * @return		true if present
    */
   public boolean has(String name) {
-    return m_Variables.containsKey(name);
+    if ((m_Variables != null) && m_Variables.containsKey(name))
+      return true;
+    if ((m_Parent == null) || isRemoved(name))
+      return false;
+    return m_Parent.has(name);
   }
 
   /**
@@ -101,7 +390,13 @@ public class Variables {
    * @return		the value, null if variable doesn't exist
    */
   public Object get(String name) {
-    return m_Variables.get(name);
+    Object	result;
+
+    result = (m_Variables == null) ? null : m_Variables.get(name);
+    if ((result == null) && (m_Parent != null) && !isRemoved(name))
+      result = m_Parent.get(name);
+
+    return result;
   }
 
   /**
@@ -111,40 +406,85 @@ public class Variables {
    */
   public List<String> names() {
     List<String>	result;
+    Set<String>		names;
 
-    result = new ArrayList<>(m_Variables.keySet());
+    names = new HashSet<>();
+    if (m_Variables != null)
+      names.addAll(m_Variables.keySet());
+    if (m_Parent != null) {
+      for (String name: m_Parent.names()) {
+	if (!isRemoved(name))
+	  names.add(name);
+      }
+    }
+    result = new ArrayList<>(names);
     Collections.sort(result);
 
     return result;
   }
 
   /**
-   * Expands all variables in the command.
+   * Returns the (cached) template for the string.
+   *
+   * @param s		the string to get the template for
+   * @return		the template
+   */
+  protected static Template getTemplate(String s) {
+    Template	result;
+
+    synchronized (TEMPLATES) {
+      result = TEMPLATES.get(s);
+      if (result == null) {
+	result = new Template(s);
+	TEMPLATES.put(s, result);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Expands all variables in the command. Variables get expanded
+   * repeatedly as long as the expansion changes the command (i.e., values
+   * can reference other variables), environment variables get expanded
+   * once afterwards. Unknown placeholders are left untouched.
+   * Only the template of the command itself gets cached, the intermediate
+   * results of the expansion get parsed without caching.
    *
    * @param cmd		the command to process
    * @return		the processed command
+   * @throws IllegalStateException	if the variables reference each other in a cycle
    */
   public String expand(String cmd) {
-    String	result;
-    String	orig;
-    Object	val;
+    String		result;
+    String		expanded;
+    Set<String>		seen;
+    Template		template;
 
-    result = cmd;
-    orig   = cmd;
+    if (!cmd.contains(VAR_START) && !cmd.contains(ENV_START))
+      return cmd;
 
-    for (String name: m_Variables.keySet()) {
-      val = m_Variables.get(name);
-      if (val instanceof String)
-	result = result.replace(VAR_START + name + VAR_END, (String) val);
+    result   = cmd;
+    seen     = null;
+    template = getTemplate(cmd);
+    while (result.contains(VAR_START)) {
+      if (template == null)
+	template = new Template(result);
+      expanded = template.expandVariables(this);
+      if (expanded.equals(result))
+	break;
+      if (seen == null)
+	seen = new HashSet<>();
+      if (!seen.add(result) || (seen.size() > MAX_DEPTH))
+	throw new IllegalStateException("Cyclic variable reference detected: " + cmd);
+      result   = expanded;
+      template = null;
     }
 
-    // recursive expansion?
-    if (result.contains(VAR_START) && !result.equals(orig))
-      result = expand(result);
-
-    for (String name: System.getenv().keySet()) {
-      val    = System.getenv(name);
-      result = result.replace(ENV_START + name + ENV_END, (String) val);
+    if (result.contains(ENV_START)) {
+      if (template == null)
+	template = new Template(result);
+      result = template.expandEnvironment();
     }
 
     return result;
@@ -0,0 +1,127 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Wait.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Waits for jobs running in the background to finish.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Wait
+  extends AbstractScriptCommand {
+
+  /**
+   * The name of the command (used on the commandline).
+   *
+   * @return		the name
+   */
+  @Override
+  public String getName() {
+    return "wait";
+  }
+
+  /**
+   * Returns a short help string.
+   *
+   * @return		the help string
+   */
+  @Override
+  public String getHelp() {
+    return "Waits for the specified (or all) jobs started with 'spawn' to finish.\n"
+      + "Stores the exit status and captured output in '<id>_status' and '<id>_output'.";
+  }
+
+  /**
+   * Returns the parser to use for the arguments.
+   *
+   * @return		the parser
+   */
+  @Override
+  public ArgumentParser getParser() {
+    ArgumentParser 	result;
+
+    result = new ArgumentParser(getName());
+    result.addOption("--id")
+      .dest("id")
+      .help("the ID of the job to wait for.")
+      .multiple(true);
+    result.addOption("--all")
+      .dest("all")
+      .help("whether to wait for all jobs (default if no IDs supplied).")
+      .argument(false);
+    result.addOption("--ignore-status")
+      .dest("ignorestatus")
+      .help("whether to ignore jobs that failed (non-zero exit status) rather than failing.")
+      .argument(false);
+
+    return result;
+  }
+
+  /**
+   * Evaluates the script command.
+   *
+   * @param ns		the namespace
+   * @param options	the options
+   * @return		true if successful
+   */
+  @Override
+  protected boolean evalCommand(Namespace ns, String[] options) {
+    boolean		result;
+    List<String>	ids;
+    Jobs.Job		job;
+
+    ids = new ArrayList<>();
+    ids.addAll(ns.getList("id"));
+    if (ids.isEmpty() || ns.getBoolean("all"))
+      ids = getContext().getJobs().ids();
+
+    result = true;
+    for (String id: ids) {
+      try {
+	job = getContext().getJobs().waitFor(id);
+      }
+      catch (InterruptedException e) {
+	addError("Interrupted while waiting for job: " + id, e);
+	return false;
+      }
+      if (job == null) {
+	addError("Unknown job: " + id);
+	result = false;
+	continue;
+      }
+      getContext().getVariables().set(id + "_status", "" + job.getStatus());
+      if (job.getOutput() != null)
+	getContext().getVariables().set(id + "_output", job.getOutput());
+      if ((job.getStatus() != 0) && !ns.getBoolean("ignorestatus")) {
+	addError("Job '" + id + "' failed with exit status " + job.getStatus());
+	result = false;
+      }
+    }
+
+    return result;
+  }
+}
@@ -22,9 +22,14 @@ package com.github.fracpete.wekavirtualenv.command.script.instructions;
 
 import com.github.fracpete.wekavirtualenv.core.InvalidIndentationException;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 /**
@@ -37,6 +42,55 @@ public class Block
   extends ArrayList<Instruction>
   implements Instruction {
 
+  /** the maximum number of cached script files. */
+  public final static int MAX_FILES = 100;
+
+  /**
+   * A parsed script file.
+   */
+  protected static class ParsedFile {
+
+    /** the timestamp of the file when it was parsed. */
+    protected long m_LastModified;
+
+    /** the size of the file when it was parsed. */
+    protected long m_Length;
+
+    /** the parsed instructions. */
+    protected Block m_Instructions;
+
+    /**
+     * Initializes the entry.
+     *
+     * @param lastModified	the timestamp of the file before parsing
+     * @param length		the size of the file before parsing
+     * @param instructions	the parsed instructions
+     */
+    public ParsedFile(long lastModified, long length, Block instructions) {
+      m_LastModified = lastModified;
+      m_Length       = length;
+      m_Instructions = instructions;
+    }
+
+    /**
+     * Checks whether the file has changed since it was parsed.
+     *
+     * @param file	the file to check
+     * @return		true if the parsed instructions are still valid
+     */
+    public boolean isValid(File file) {
+      return (file.lastModified() == m_LastModified) && (file.length() == m_Length);
+    }
+  }
+
+  /** the cache of parsed script files (absolute path). */
+  protected final static Map<String,ParsedFile> FILES = new LinkedHashMap<String,ParsedFile>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String,ParsedFile> eldest) {
+      return (size() > MAX_FILES);
+    }
+  };
+
   /** the parent. */
   protected Block m_Parent;
 
@@ -271,4 +325,37 @@ public class Block
 
     return result;
   }
+
+  /**
+   * Reads and parses the script file. Parsed files get cached and only get
+   * parsed again if they were modified in the meantime. The returned
+   * instructions therefore must not be modified.
+   *
+   * @param file	the script file to load
+   * @return		the parsed instructions
+   * @throws IOException	if reading of the file fails
+   * @throws InvalidIndentationException	if indentation mixes tabs/blanks
+   */
+  public static Block load(File file) throws IOException, InvalidIndentationException {
+    ParsedFile	parsed;
+    String	path;
+    long	lastModified;
+    long	length;
+
+    path = file.getAbsolutePath();
+    synchronized (FILES) {
+      parsed = FILES.get(path);
+    }
+    if ((parsed != null) && parsed.isValid(file))
+      return parsed.m_Instructions;
+
+    lastModified = file.lastModified();
+    length       = file.length();
+    parsed       = new ParsedFile(lastModified, length, parse(Files.readAllLines(file.toPath())));
+    synchronized (FILES) {
+      FILES.put(path, parsed);
+    }
+
+    return parsed.m_Instructions;
+  }
 }
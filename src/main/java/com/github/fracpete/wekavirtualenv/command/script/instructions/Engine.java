@@ -21,17 +21,21 @@
 package com.github.fracpete.wekavirtualenv.command.script.instructions;
 
 import com.github.fracpete.wekavirtualenv.command.AbstractCommand;
+import com.github.fracpete.wekavirtualenv.command.AbstractLaunchCommand;
 import com.github.fracpete.wekavirtualenv.command.Command;
 import com.github.fracpete.wekavirtualenv.command.CommandSetup;
 import com.github.fracpete.wekavirtualenv.command.CommandUtils;
 import com.github.fracpete.wekavirtualenv.command.CommandWithFilterSupport;
 import com.github.fracpete.wekavirtualenv.command.Help;
 import com.github.fracpete.wekavirtualenv.command.ListEnvs;
+import com.github.fracpete.wekavirtualenv.command.OutputEvent;
 import com.github.fracpete.wekavirtualenv.command.OutputListener;
 import com.github.fracpete.wekavirtualenv.command.OutputListenerSupporter;
 import com.github.fracpete.wekavirtualenv.command.filter.AbstractFilter;
+import com.github.fracpete.wekavirtualenv.command.filter.Filter;
 import com.github.fracpete.wekavirtualenv.command.filter.FilterSetup;
 import com.github.fracpete.wekavirtualenv.command.script.AbstractScriptCommand;
+import com.github.fracpete.wekavirtualenv.command.script.FilterForwarder;
 import com.github.fracpete.wekavirtualenv.command.script.InstructionBlockHandler;
 import com.github.fracpete.wekavirtualenv.core.Destroyable;
 import com.github.fracpete.wekavirtualenv.core.InvalidEnvironmentException;
@@ -66,10 +70,19 @@ public class Engine
   protected Set<OutputListener> m_OutputListeners;
 
   /** whether the execution got stopped. */
-  protected boolean m_Stopped;
+  protected volatile boolean m_Stopped;
 
   /** the current command being executed. */
-  protected Command m_Current;
+  protected volatile Command m_Current;
+
+  /** the last command that was executed. */
+  protected Command m_Last;
+
+  /** the re-usable output event. */
+  protected OutputEvent m_OutputEvent;
+
+  /** the time (nano-seconds) when the current line was prepared, -1 if not yet. */
+  protected long m_Prepared;
 
   /**
    * Initializes the engine.
@@ -131,12 +144,17 @@ public class Engine
    * @param stdout	whether to output on stdout or stderr
    */
   public void println(String line, boolean stdout) {
-    if (stdout)
-      System.out.println(line);
-    else
-      System.err.println(line);
-    for (OutputListener l: m_OutputListeners)
-      l.outputOccurred(line, stdout);
+    if (!CommandUtils.isConsoleRedirected(m_OutputListeners)) {
+      if (stdout)
+	System.out.println(line);
+      else
+	System.err.println(line);
+    }
+    if (!m_OutputListeners.isEmpty()) {
+      if (m_OutputEvent == null)
+	m_OutputEvent = new OutputEvent(this, "script");
+      OutputEvent.notifyListeners(m_OutputListeners, m_OutputEvent, line, stdout);
+    }
   }
 
   /**
@@ -154,20 +172,31 @@ public class Engine
    *
    * @param setup	the setup to add the filter to
    * @param filterArgs	the filter arguments
+   * @param line	the line the command originates from, can be null
+   * @param index	the index of the filter in the line
    * @return		true if successfully added
    */
-  protected boolean addFilter(CommandSetup setup, List<String> filterArgs) {
-    FilterSetup filterSetup;
-
-    filterSetup = new FilterSetup();
-    filterSetup.options = filterArgs.toArray(new String[filterArgs.size()]);
-    if (!AbstractFilter.configure(filterSetup)) {
-      println("Failed to configure filter: " + OptionUtils.joinOptions(filterArgs.toArray(new String[filterArgs.size()])), false);
+  protected boolean addFilter(CommandSetup setup, List<String> filterArgs, Line line, int index) {
+    FilterSetup 	filterSetup;
+    String[]		options;
+    Filter		filter;
+
+    options = filterArgs.toArray(new String[filterArgs.size()]);
+    if (line != null) {
+      filter = line.newFilter(index, options.clone());
+    }
+    else {
+      filterSetup = new FilterSetup();
+      filterSetup.options = options.clone();
+      filter = AbstractFilter.configure(filterSetup) ? filterSetup.filter : null;
+    }
+    if (filter == null) {
+      println("Failed to configure filter: " + OptionUtils.joinOptions(options), false);
       return false;
     }
     else {
       if (setup.command instanceof CommandWithFilterSupport) {
-	((CommandWithFilterSupport) setup.command).addFilter(filterSetup.filter);
+	((CommandWithFilterSupport) setup.command).addFilter(filter);
       }
       else {
 	println("Command '" + setup.command.getName() + "' does not support filters!", false);
@@ -187,14 +216,32 @@ public class Engine
    * @return		the command, null if failed to configure
    */
   public boolean configureScriptSetup(CommandSetup setup) {
+    return configureScriptSetup(setup, null);
+  }
+
+  /**
+   * Configures the command setup for the script. The line caches the
+   * command class and the parsed filters across executions.
+   *
+   * @param setup	the setup to update
+   * @param line	the line the options originate from, can be null
+   * @return		the command, null if failed to configure
+   */
+  public boolean configureScriptSetup(CommandSetup setup, Line line) {
     List<String>	filterArgs;
     int			firstFilterPos;
+    int			numFilters;
     int			i;
 
-    setup.command = AbstractCommand.getCommand(setup.options[0]);
-    // check script commands
-    if (setup.command == null)
-      setup.command = AbstractScriptCommand.getScriptCommand(setup.options[0]);
+    if (line != null) {
+      setup.command = line.newCommand(setup.options[0]);
+    }
+    else {
+      setup.command = AbstractCommand.getCommand(setup.options[0]);
+      // check script commands
+      if (setup.command == null)
+	setup.command = AbstractScriptCommand.getScriptCommand(setup.options[0]);
+    }
     if (setup.command == null) {
       println("Unknown command: " + setup.options[0], false);
       new Help().execute(new String[0]);
@@ -231,29 +278,32 @@ public class Engine
       }
     }
 
-    // filters?
-    firstFilterPos = -1;
-    filterArgs     = new ArrayList<>();
-    for (i = 0; i < setup.options.length; i++) {
-      if (setup.options[i].equals("|")) {
-        if (filterArgs.size() > 0) {
-          if (!addFilter(setup, filterArgs))
-            return false;
+    // filters? (commands that execute other commands pass them on)
+    if (!(setup.command instanceof FilterForwarder)) {
+      firstFilterPos = -1;
+      numFilters     = 0;
+      filterArgs     = new ArrayList<>();
+      for (i = 0; i < setup.options.length; i++) {
+	if (setup.options[i].equals("|")) {
+	  if (filterArgs.size() > 0) {
+	    if (!addFilter(setup, filterArgs, line, numFilters++))
+	      return false;
+	  }
+	  if (firstFilterPos == -1)
+	    firstFilterPos = i;
+	  filterArgs = new ArrayList<>();
+	  continue;
 	}
-        if (firstFilterPos == -1)
-	  firstFilterPos = i;
-	filterArgs = new ArrayList<>();
-        continue;
+	if (firstFilterPos > -1)
+	  filterArgs.add(setup.options[i]);
       }
-      if (firstFilterPos > -1)
-	filterArgs.add(setup.options[i]);
-    }
-    if (firstFilterPos > -1) {
-      if (filterArgs.size() > 0) {
-	if (!addFilter(setup, filterArgs))
-	  return false;
+      if (firstFilterPos > -1) {
+	if (filterArgs.size() > 0) {
+	  if (!addFilter(setup, filterArgs, line, numFilters))
+	    return false;
+	}
+	setup.options = CommandUtils.removeFrom(setup.options, firstFilterPos);
       }
-      setup.options = CommandUtils.removeFrom(setup.options, firstFilterPos);
     }
 
     if (setup.command instanceof AbstractScriptCommand)
@@ -262,26 +312,103 @@ public class Engine
     return true;
   }
 
+  /**
+   * Checks whether the command was executed successfully. For commands that
+   * launch a process, the process also has to exit with code 0.
+   *
+   * @param command	the command that was executed
+   * @param result	the result of the execution
+   * @return		true if successful
+   */
+  protected boolean isSuccessful(Command command, boolean result) {
+    if (!result)
+      return false;
+    if (command instanceof AbstractLaunchCommand)
+      return (((AbstractLaunchCommand) command).getExitCode() == 0);
+    return true;
+  }
+
+  /**
+   * Executes the command, recording the timings if profiling.
+   *
+   * @param line	the command to execute
+   * @param block	the nested block for the command, if any
+   * @return		true if successfully executed
+   */
+  protected boolean execute(Line line, Block block) {
+    Profiler	profiler;
+    long	start;
+    long	end;
+    long	cpu;
+
+    profiler = m_Context.getProfiler();
+    if (profiler == null)
+      return doExecute(line, block);
+
+    m_Prepared = -1;
+    cpu        = Profiler.getChildCPUTime();
+    start      = System.nanoTime();
+    try {
+      return doExecute(line, block);
+    }
+    finally {
+      end = System.nanoTime();
+      if (cpu > -1)
+	cpu = Profiler.getChildCPUTime() - cpu;
+      if (m_Prepared == -1)
+	profiler.record(line, end - start, 0, cpu);
+      else
+	profiler.record(line, m_Prepared - start, end - m_Prepared, cpu);
+    }
+  }
+
   /**
    * Executes the command.
    *
-   * @param cmd		the command to execute
+   * @param line	the command to execute
    * @param block	the nested block for the command, if any
    * @return		true if successfully executed
    */
-  protected boolean execute(String cmd, Block block) {
-    CommandSetup setup;
+  protected boolean doExecute(Line line, Block block) {
+    CommandSetup 	setup;
+    String[]		options;
+    List<String>	inputs;
+    List<String>	outputs;
+    IncrementalState	state;
+    TimingHistory	timings;
+    String[]		launchOptions;
+    String		cmd;
+    boolean		result;
+    long		start;
 
     if (m_Verbose)
-      println("[RAW] " + cmd, false);
-    cmd = m_Context.getVariables().expand(cmd);
+      println("[RAW] " + line.getInstruction(), false);
+    try {
+      options = line.getArguments(m_Context.getVariables());
+    }
+    catch (Exception e) {
+      m_Context.addError("Failed to expand variables: " + line.getInstruction(), e);
+      return false;
+    }
+    cmd = OptionUtils.joinOptions(options);
     if (m_Verbose)
       println("[EXP] " + cmd, false);
 
+    // declared inputs/outputs
+    inputs  = new ArrayList<>();
+    outputs = new ArrayList<>();
+    options = IncrementalState.extract(options, inputs, outputs);
+    state   = m_Context.getIncrementalState();
+    if ((state != null) && state.isUpToDate(cmd, inputs, outputs)) {
+      if (m_Verbose)
+	println("[SKIP] " + cmd, false);
+      return true;
+    }
+
     try {
       setup = new CommandSetup();
-      setup.options = OptionUtils.splitOptions(cmd);
-      if (!configureScriptSetup(setup) || (setup.command == null))
+      setup.options = options;
+      if (!configureScriptSetup(setup, line) || (setup.command == null))
 	return false;
       if ((setup.command instanceof InstructionBlockHandler) && (block != null))
 	((InstructionBlockHandler) setup.command).setInstructions(block);
@@ -291,8 +418,18 @@ public class Engine
       }
 
       // execute
-      m_Current = setup.command;
-      return AbstractCommand.executeSetup(setup);
+      timings       = m_Context.getTimingHistory();
+      launchOptions = setup.options.clone();
+      m_Prepared    = System.nanoTime();
+      m_Current     = setup.command;
+      m_Last        = setup.command;
+      start         = System.currentTimeMillis();
+      result        = AbstractCommand.executeSetup(setup);
+      if ((state != null) && isSuccessful(setup.command, result))
+	state.record(cmd, inputs, outputs);
+      if ((timings != null) && isSuccessful(setup.command, result) && (setup.command instanceof AbstractLaunchCommand) && !((AbstractLaunchCommand) setup.command).isCached())
+	timings.record(setup.command, launchOptions, System.currentTimeMillis() - start);
+      return result;
     }
     catch (Exception e) {
       m_Context.addError("Failed to execute command: " + cmd, e);
@@ -303,6 +440,15 @@ public class Engine
     }
   }
 
+  /**
+   * Returns the last command that was executed.
+   *
+   * @return		the command, null if none executed
+   */
+  public Command getLastCommand() {
+    return m_Last;
+  }
+
   /**
    * Executes the instructions.
    *
@@ -328,7 +474,7 @@ public class Engine
           block = (Block) m_Instructions.get(i + 1);
       }
       if (instruction instanceof Line) {
-	result = execute(((Line) instruction).getInstruction(), block);
+	result = execute((Line) instruction, block);
 	if (block != null)
 	  i++;
       }
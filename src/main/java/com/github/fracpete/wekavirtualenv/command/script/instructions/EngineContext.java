@@ -21,6 +21,7 @@
 package com.github.fracpete.wekavirtualenv.command.script.instructions;
 
 import com.github.fracpete.wekavirtualenv.command.ErrorHandler;
+import com.github.fracpete.wekavirtualenv.command.script.Jobs;
 import com.github.fracpete.wekavirtualenv.command.script.VariablesHandler;
 
 /**
@@ -31,4 +32,40 @@ import com.github.fracpete.wekavirtualenv.command.script.VariablesHandler;
 public interface EngineContext
   extends ErrorHandler, VariablesHandler {
 
+  /**
+   * Returns the jobs running in the background.
+   *
+   * @return		the jobs
+   */
+  public Jobs getJobs();
+
+  /**
+   * Returns the state for incremental execution.
+   *
+   * @return		the state, null if not executing incrementally
+   */
+  public IncrementalState getIncrementalState();
+
+  /**
+   * Returns the profiler.
+   *
+   * @return		the profiler, null if not profiling
+   */
+  public Profiler getProfiler();
+
+  /**
+   * Returns the timings of launched commands.
+   *
+   * @return		the timings, null if not recording
+   */
+  public TimingHistory getTimingHistory();
+
+  /**
+   * Returns whether the script file is currently being executed, i.e., is
+   * the script itself or included by it (directly or indirectly).
+   *
+   * @param path	the absolute path of the script file
+   * @return		true if being executed
+   */
+  public boolean isIncluding(String path);
 }
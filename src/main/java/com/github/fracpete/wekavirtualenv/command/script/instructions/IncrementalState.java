@@ -0,0 +1,281 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * IncrementalState.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script.instructions;
+
+import com.github.fracpete.wekavirtualenv.core.HashUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Keeps track of the inputs and outputs of instructions, for skipping
+ * instructions that are up-to-date when executing a script incrementally.
+ * An instruction is up-to-date if its outputs exist, its command line is
+ * unchanged since the last successful execution and none of its inputs
+ * changed (newer than the outputs and with different content).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class IncrementalState {
+
+  /** the option for declaring an input (reserved, to avoid clashes with options of commands). */
+  public final static String INPUTS = "--wenv-inputs";
+
+  /** the option for declaring an output (reserved, to avoid clashes with options of commands). */
+  public final static String OUTPUTS = "--wenv-outputs";
+
+  /** the suffix for the command hash. */
+  public final static String SUFFIX_CMD = ".cmd";
+
+  /** the suffix for an input path. */
+  public final static String SUFFIX_INPUT = ".input.";
+
+  /** the suffix for an input hash. */
+  public final static String SUFFIX_HASH = ".hash.";
+
+  /** the file to store the state in. */
+  protected File m_File;
+
+  /** the state. */
+  protected Properties m_State;
+
+  /** whether the state was modified. */
+  protected boolean m_Modified;
+
+  /**
+   * Initializes the state.
+   *
+   * @param file	the file to store the state in
+   */
+  public IncrementalState(File file) {
+    super();
+    m_File     = file;
+    m_State    = new Properties();
+    m_Modified = false;
+  }
+
+  /**
+   * Returns the default state file for the script.
+   *
+   * @param script	the script file
+   * @return		the state file
+   */
+  public static File getDefaultFile(File script) {
+    return new File(script.getAbsoluteFile().getParentFile(), "." + script.getName() + ".state");
+  }
+
+  /**
+   * Returns the state file.
+   *
+   * @return		the file
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Loads the state, if the file exists.
+   *
+   * @throws IOException	if loading fails
+   */
+  public synchronized void load() throws IOException {
+    m_State.clear();
+    if (!m_File.exists())
+      return;
+    try (InputStream in = new FileInputStream(m_File)) {
+      m_State.load(in);
+    }
+  }
+
+  /**
+   * Saves the state, if modified.
+   *
+   * @throws IOException	if saving fails
+   */
+  public synchronized void save() throws IOException {
+    if (!m_Modified)
+      return;
+    try (OutputStream out = new FileOutputStream(m_File)) {
+      m_State.store(out, "incremental state");
+    }
+    m_Modified = false;
+  }
+
+  /**
+   * Removes the declared inputs and outputs from the options.
+   * Only the options of the command itself get inspected, not any filters.
+   *
+   * @param options	the options to process
+   * @param inputs	for storing the inputs
+   * @param outputs	for storing the outputs
+   * @return		the options without the inputs/outputs
+   */
+  public static String[] extract(String[] options, List<String> inputs, List<String> outputs) {
+    List<String>	result;
+    int			i;
+    boolean		filters;
+
+    result  = new ArrayList<>();
+    filters = false;
+    for (i = 0; i < options.length; i++) {
+      if (options[i].equals("|"))
+	filters = true;
+      if (!filters && (i < options.length - 1)) {
+	if (options[i].equals(INPUTS)) {
+	  inputs.add(options[++i]);
+	  continue;
+	}
+	if (options[i].equals(OUTPUTS)) {
+	  outputs.add(options[++i]);
+	  continue;
+	}
+      }
+      result.add(options[i]);
+    }
+
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Generates the key for the outputs.
+   *
+   * @param outputs	the outputs
+   * @return		the key
+   */
+  protected String key(List<String> outputs) {
+    List<String>	paths;
+
+    paths = new ArrayList<>();
+    for (String output: outputs)
+      paths.add(new File(output).getAbsolutePath());
+    Collections.sort(paths);
+
+    return HashUtils.hash(String.join("\n", paths));
+  }
+
+  /**
+   * Checks whether the instruction is up-to-date.
+   *
+   * @param cmd		the (expanded) command line
+   * @param inputs	the declared inputs
+   * @param outputs	the declared outputs
+   * @return		true if up-to-date and can be skipped
+   */
+  public boolean isUpToDate(String cmd, List<String> inputs, List<String> outputs) {
+    String	key;
+    long	oldest;
+    File	file;
+    int		i;
+    String	hash;
+
+    if (outputs.isEmpty())
+      return false;
+
+    key = key(outputs);
+    synchronized (this) {
+      if (!HashUtils.hash(cmd).equals(m_State.getProperty(key + SUFFIX_CMD)))
+	return false;
+    }
+
+    // outputs present?
+    oldest = Long.MAX_VALUE;
+    for (String output: outputs) {
+      file = new File(output);
+      if (!file.exists())
+	return false;
+      oldest = Math.min(oldest, file.lastModified());
+    }
+
+    // inputs changed?
+    for (i = 0; i < inputs.size(); i++) {
+      file = new File(inputs.get(i));
+      if (!file.exists())
+	return false;
+      if (file.isDirectory() || (file.lastModified() <= oldest))
+	continue;
+      synchronized (this) {
+	hash = m_State.getProperty(key + SUFFIX_HASH + i);
+      }
+      try {
+	if ((hash == null) || !hash.equals(HashUtils.hash(file)))
+	  return false;
+      }
+      catch (Exception e) {
+	return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Records the successful execution of the instruction.
+   *
+   * @param cmd		the (expanded) command line
+   * @param inputs	the declared inputs
+   * @param outputs	the declared outputs
+   */
+  public void record(String cmd, List<String> inputs, List<String> outputs) {
+    String		key;
+    Map<String,String>	hashes;
+    File		file;
+    int			i;
+
+    if (outputs.isEmpty())
+      return;
+
+    key    = key(outputs);
+    hashes = new HashMap<>();
+    for (i = 0; i < inputs.size(); i++) {
+      file = new File(inputs.get(i));
+      try {
+	if (file.isFile())
+	  hashes.put(key + SUFFIX_HASH + i, HashUtils.hash(file));
+      }
+      catch (Exception e) {
+	// ignored, input counts as changed next time
+      }
+    }
+
+    synchronized (this) {
+      for (String name: m_State.stringPropertyNames()) {
+	if (name.startsWith(key + "."))
+	  m_State.remove(name);
+      }
+      m_State.setProperty(key + SUFFIX_CMD, HashUtils.hash(cmd));
+      for (i = 0; i < inputs.size(); i++)
+	m_State.setProperty(key + SUFFIX_INPUT + i, new File(inputs.get(i)).getAbsolutePath());
+      for (String name: hashes.keySet())
+	m_State.setProperty(name, hashes.get(name));
+      m_Modified = true;
+    }
+  }
+}
@@ -20,6 +20,20 @@
 
 package com.github.fracpete.wekavirtualenv.command.script.instructions;
 
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.AbstractCommand;
+import com.github.fracpete.wekavirtualenv.command.Command;
+import com.github.fracpete.wekavirtualenv.command.filter.AbstractFilter;
+import com.github.fracpete.wekavirtualenv.command.filter.Filter;
+import com.github.fracpete.wekavirtualenv.command.filter.FilterSetup;
+import com.github.fracpete.wekavirtualenv.command.script.AbstractScriptCommand;
+import com.github.fracpete.wekavirtualenv.command.script.Variables;
+import nz.ac.waikato.cms.jenericcmdline.core.OptionUtils;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Contains a single instruction line.
  *
@@ -28,9 +42,43 @@ package com.github.fracpete.wekavirtualenv.command.script.instructions;
 public class Line
   implements Instruction {
 
+  /**
+   * Container for a filter that has already been parsed.
+   */
+  public static class FilterSpec
+    implements Serializable {
+
+    /** the filter options the spec was generated from. */
+    public String key;
+
+    /** the class of the filter. */
+    public Class filter;
+
+    /** the parsed options. */
+    public Namespace options;
+  }
+
   /** the instruction. */
   protected String m_Instruction;
 
+  /** the pre-split instruction, null if not yet compiled. */
+  protected String[] m_Arguments;
+
+  /** whether an argument contains variables. */
+  protected boolean[] m_Variables;
+
+  /** whether the instruction has to be expanded and split every time. */
+  protected boolean m_Dynamic;
+
+  /** the name of the resolved command. */
+  protected String m_CommandName;
+
+  /** the class of the resolved command. */
+  protected Class m_CommandClass;
+
+  /** the parsed filters (index of filter - spec). */
+  protected Map<Integer,FilterSpec> m_Filters;
+
   /**
    * Initializes with the instruction.
    *
@@ -39,6 +87,19 @@ public class Line
   public Line(String instruction) {
     super();
     m_Instruction = instruction.trim();
+    m_Filters     = new HashMap<>();
+  }
+
+  /**
+   * Initializes with arguments that have already been split and expanded.
+   * These get used as is, i.e., variables do not get expanded again.
+   *
+   * @param arguments	the arguments of the instruction
+   */
+  public Line(String[] arguments) {
+    this(OptionUtils.joinOptions(arguments));
+    m_Arguments = arguments.clone();
+    m_Variables = new boolean[arguments.length];
   }
 
   /**
@@ -50,6 +111,166 @@ public class Line
     return m_Instruction;
   }
 
+  /**
+   * Splits the instruction into arguments and records which ones contain
+   * variables. Escaped characters get resolved by the split, as variable
+   * values get expanded afterwards. Instructions which cannot be split get
+   * expanded and split on every execution.
+   */
+  protected synchronized void compile() {
+    String[]	args;
+    boolean[]	vars;
+    int		i;
+
+    if ((m_Arguments != null) || m_Dynamic)
+      return;
+
+    try {
+      args = OptionUtils.splitOptions(m_Instruction);
+    }
+    catch (Exception e) {
+      m_Dynamic = true;
+      return;
+    }
+    vars = new boolean[args.length];
+    for (i = 0; i < args.length; i++)
+      vars[i] = args[i].contains(Variables.VAR_START) || args[i].contains(Variables.ENV_START);
+    m_Variables = vars;
+    m_Arguments = args;
+  }
+
+  /**
+   * Checks whether an expanded argument can be used as is, i.e., whether
+   * splitting the expanded instruction would yield the same argument.
+   *
+   * @param arg		the expanded argument
+   * @return		true if it can be used
+   */
+  protected boolean isPlain(String arg) {
+    int		i;
+    char	c;
+
+    if (arg.isEmpty())
+      return false;
+
+    for (i = 0; i < arg.length(); i++) {
+      c = arg.charAt(i);
+      if (Character.isWhitespace(c) || (c == '"') || (c == '\'') || (c == '\\'))
+	return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the instruction split into arguments, with all variables
+   * expanded. Only the arguments containing variables get expanded, the
+   * split is re-used. Falls back on expanding and splitting the complete
+   * instruction if a value would change the split (e.g., contains blanks).
+   *
+   * @param variables	the variables to use for expansion
+   * @return		the arguments, a new array that can be modified
+   * @throws Exception	if expansion or splitting fails
+   */
+  public String[] getArguments(Variables variables) throws Exception {
+    String[]	result;
+    int		i;
+
+    compile();
+    if (m_Dynamic)
+      return OptionUtils.splitOptions(variables.expand(m_Instruction));
+
+    result = m_Arguments.clone();
+    for (i = 0; i < result.length; i++) {
+      if (!m_Variables[i])
+	continue;
+      result[i] = variables.expand(result[i]);
+      if (!isPlain(result[i]))
+	return OptionUtils.splitOptions(variables.expand(m_Instruction));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a new instance of the command with the given name. The class of
+   * the command only gets looked up again if the name changes.
+   *
+   * @param name	the name of the command
+   * @return		the command, null if unknown
+   */
+  public Command newCommand(String name) {
+    Class	cls;
+
+    synchronized (this) {
+      if (name.equals(m_CommandName)) {
+	cls = m_CommandClass;
+      }
+      else {
+	cls = AbstractCommand.getCommandClasses().get(name);
+	if (cls == null)
+	  cls = AbstractScriptCommand.getScriptCommandClasses().get(name);
+	if (cls == null)
+	  return null;
+	m_CommandName  = name;
+	m_CommandClass = cls;
+      }
+    }
+
+    try {
+      return (Command) cls.newInstance();
+    }
+    catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a new, initialized instance of the filter. The options only get
+   * parsed again if they differ from the previous execution.
+   *
+   * @param index	the index of the filter in the instruction
+   * @param options	the filter name and its options
+   * @return		the filter, null if failed to configure
+   */
+  public Filter newFilter(int index, String[] options) {
+    String		key;
+    FilterSpec		spec;
+    FilterSetup		setup;
+    Filter		result;
+
+    key = OptionUtils.joinOptions(options);
+    synchronized (this) {
+      spec = m_Filters.get(index);
+    }
+
+    if ((spec != null) && spec.key.equals(key)) {
+      try {
+	result = (Filter) spec.filter.newInstance();
+	if (result.initialize(spec.options))
+	  return result;
+      }
+      catch (Exception e) {
+	// ignored, configured from scratch below
+      }
+    }
+
+    setup         = new FilterSetup();
+    setup.options = options;
+    if (!AbstractFilter.configure(setup))
+      return null;
+
+    spec         = new FilterSpec();
+    spec.key     = key;
+    spec.filter  = setup.filter.getClass();
+    spec.options = setup.namespace;
+    synchronized (this) {
+      m_Filters.put(index, spec);
+    }
+
+    return setup.filter;
+  }
+
   /**
    * For converting the the instruction into a string.
    *
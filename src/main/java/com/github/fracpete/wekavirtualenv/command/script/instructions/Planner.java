@@ -0,0 +1,411 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Planner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script.instructions;
+
+import com.github.fracpete.simpleargparse4j.ArgumentParser;
+import com.github.fracpete.simpleargparse4j.Namespace;
+import com.github.fracpete.wekavirtualenv.command.AbstractCommand;
+import com.github.fracpete.wekavirtualenv.command.AbstractLaunchCommand;
+import com.github.fracpete.wekavirtualenv.command.CommandSetup;
+import com.github.fracpete.wekavirtualenv.command.CommandUtils;
+import com.github.fracpete.wekavirtualenv.command.script.PlanningSupporter;
+import com.github.fracpete.wekavirtualenv.command.script.VariablesScriptCommand;
+import nz.ac.waikato.cms.jenericcmdline.core.OptionUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Walks the instructions of a script without launching any processes
+ * (dry-run), counting the processes that would get launched per
+ * environment and per line, and estimating the runtime from the timings of
+ * previous executions (see {@link TimingHistory}). Processes that get
+ * spawned run in the background and only extend the runtime if they take
+ * longer than the rest of the script.
+ * <br>
+ * Commands that only modify variables (see {@link VariablesScriptCommand})
+ * get executed, commands that execute instructions themselves (see
+ * {@link PlanningSupporter}) plan them, all other commands get skipped.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Planner {
+
+  /** the name used for commands without environment. */
+  public final static String NO_ENV = "-";
+
+  /**
+   * The launches for a single environment.
+   */
+  public static class Estimate {
+
+    /** the number of launches. */
+    protected int m_Launches;
+
+    /** the number of launches without timings. */
+    protected int m_Unknown;
+
+    /** the estimated time in msec. */
+    protected long m_Time;
+
+    /**
+     * Returns the number of launches.
+     *
+     * @return		the launches
+     */
+    public int getLaunches() {
+      return m_Launches;
+    }
+
+    /**
+     * Returns the number of launches for which no timings were available.
+     *
+     * @return		the launches
+     */
+    public int getUnknown() {
+      return m_Unknown;
+    }
+
+    /**
+     * Returns the estimated time of the launches (with timings).
+     *
+     * @return		the time in msec
+     */
+    public long getTime() {
+      return m_Time;
+    }
+  }
+
+  /** the timings to use for estimation, null if none available. */
+  protected TimingHistory m_Timings;
+
+  /** whether to output the planned launches. */
+  protected boolean m_Verbose;
+
+  /** the launches per environment. */
+  protected Map<String,Estimate> m_Estimates;
+
+  /** the launches per line. */
+  protected Map<Line,Integer> m_Lines;
+
+  /** the line that is currently being planned. */
+  protected Line m_Line;
+
+  /** the estimated time in msec of the longest background job. */
+  protected long m_Background;
+
+  /** the number of instructions that are up-to-date. */
+  protected int m_Skipped;
+
+  /**
+   * Initializes the planner.
+   *
+   * @param timings	the timings to use for estimation, null if none available
+   * @param verbose	whether to output the planned launches
+   */
+  public Planner(TimingHistory timings, boolean verbose) {
+    super();
+    m_Timings   = timings;
+    m_Verbose   = verbose;
+    m_Estimates  = new TreeMap<>();
+    m_Lines      = new LinkedHashMap<>();
+    m_Line       = null;
+    m_Background = 0;
+    m_Skipped    = 0;
+  }
+
+  /**
+   * Returns the launches per environment.
+   *
+   * @return		the launches
+   */
+  public Map<String,Estimate> getEstimates() {
+    return m_Estimates;
+  }
+
+  /**
+   * Returns the launches per line, in order of the first launch.
+   *
+   * @return		the launches
+   */
+  public Map<Line,Integer> getLineLaunches() {
+    return m_Lines;
+  }
+
+  /**
+   * Returns the number of launches.
+   *
+   * @return		the launches
+   */
+  public int getLaunches() {
+    int		result;
+
+    result = 0;
+    for (Estimate estimate: m_Estimates.values())
+      result += estimate.getLaunches();
+
+    return result;
+  }
+
+  /**
+   * Plans the instructions.
+   *
+   * @param instructions	the instructions to plan
+   * @param context		the context to use
+   * @return			the estimated time in msec, -1 if failed to plan
+   */
+  public long plan(Block instructions, EngineContext context) {
+    long	result;
+    long	time;
+    int		i;
+    Block	block;
+    Instruction	instruction;
+
+    result = 0;
+    i      = 0;
+    while (i < instructions.size()) {
+      instruction = instructions.get(i);
+      block       = null;
+      if (i < instructions.size() - 1) {
+	if (instructions.get(i + 1) instanceof Block)
+	  block = (Block) instructions.get(i + 1);
+      }
+      if (instruction instanceof Line) {
+	time = plan((Line) instruction, block, context);
+	if (time == -1)
+	  return -1;
+	result += time;
+	if (block != null)
+	  i++;
+      }
+      else {
+	context.addError("Expected command, but found nested block!");
+	return -1;
+      }
+      i++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Plans the command.
+   *
+   * @param line	the command to plan
+   * @param block	the nested block for the command, if any
+   * @param context	the context to use
+   * @return		the estimated time in msec, -1 if failed to plan
+   */
+  public long plan(Line line, Block block, EngineContext context) {
+    Line	previous;
+
+    previous = m_Line;
+    m_Line   = line;
+    try {
+      return doPlan(line, block, context);
+    }
+    finally {
+      m_Line = previous;
+    }
+  }
+
+  /**
+   * Plans a command that gets spawned by the current line. Its launches get
+   * attributed to the current line. As the command runs in the background,
+   * its time does not get added to the time of the script. Instead, the
+   * longest background job is used as lower bound for the runtime.
+   *
+   * @param options	the command to spawn
+   * @param context	the context to use
+   * @return		the estimated time in msec (always 0), -1 if failed to plan
+   */
+  public long spawn(String[] options, EngineContext context) {
+    long	result;
+
+    result = doPlan(new Line(options), null, context);
+    if (result == -1)
+      return -1;
+    m_Background = Math.max(m_Background, result);
+
+    return 0;
+  }
+
+  /**
+   * Plans the command.
+   *
+   * @param line	the command to plan
+   * @param block	the nested block for the command, if any
+   * @param context	the context to use
+   * @return		the estimated time in msec, -1 if failed to plan
+   */
+  protected long doPlan(Line line, Block block, EngineContext context) {
+    Engine		engine;
+    CommandSetup	setup;
+    String[]		options;
+    List<String>	inputs;
+    List<String>	outputs;
+    IncrementalState	state;
+    String		cmd;
+    ArgumentParser	parser;
+    Namespace		ns;
+    long		result;
+
+    engine = new Engine(context, block, false);
+    try {
+      options = line.getArguments(context.getVariables());
+    }
+    catch (Exception e) {
+      context.addError("Failed to expand variables: " + line.getInstruction(), e);
+      return -1;
+    }
+    cmd = OptionUtils.joinOptions(options);
+
+    // up-to-date?
+    inputs  = new ArrayList<>();
+    outputs = new ArrayList<>();
+    options = IncrementalState.extract(options, inputs, outputs);
+    state   = context.getIncrementalState();
+    if ((state != null) && state.isUpToDate(cmd, inputs, outputs)) {
+      m_Skipped++;
+      if (m_Verbose)
+	engine.println("[SKIP] " + cmd, false);
+      return 0;
+    }
+
+    setup = new CommandSetup();
+    setup.options = options;
+    if (!engine.configureScriptSetup(setup, line) || (setup.command == null))
+      return -1;
+
+    // plans itself
+    if (setup.command instanceof PlanningSupporter) {
+      parser = CommandUtils.getParser(setup.command);
+      ns     = null;
+      if (parser != null) {
+	try {
+	  ns = parser.parseArgs(setup.options, true);
+	}
+	catch (Exception e) {
+	  context.addError("Failed to parse options: " + cmd, e);
+	  return -1;
+	}
+      }
+      if (!setup.command.supportsAdditionalArguments())
+	setup.options = new String[0];
+      result = ((PlanningSupporter) setup.command).plan(ns, setup.options, block, this);
+      if ((result == -1) && setup.command.hasErrors())
+	context.addError(setup.command.getErrors());
+      return result;
+    }
+
+    // only modifies variables
+    if (setup.command instanceof VariablesScriptCommand) {
+      if (!AbstractCommand.executeSetup(setup)) {
+	context.addError("Failed to execute command: " + cmd);
+	return -1;
+      }
+      return 0;
+    }
+
+    if (setup.command instanceof AbstractLaunchCommand)
+      return launch(setup, engine);
+
+    return 0;
+  }
+
+  /**
+   * Records the launch of the command.
+   *
+   * @param setup	the configured command
+   * @param engine	for outputting the planned launch
+   * @return		the estimated time in msec, 0 if no timings available
+   */
+  protected long launch(CommandSetup setup, Engine engine) {
+    Estimate	estimate;
+    String	env;
+    long	result;
+
+    env      = (setup.command.getEnv() == null) ? NO_ENV : setup.command.getEnv().name;
+    estimate = m_Estimates.computeIfAbsent(env, (String k) -> new Estimate());
+    result   = (m_Timings == null) ? -1 : m_Timings.estimate(setup.command, setup.options);
+    estimate.m_Launches++;
+    if (m_Line != null)
+      m_Lines.put(m_Line, m_Lines.getOrDefault(m_Line, 0) + 1);
+    if (result == -1)
+      estimate.m_Unknown++;
+    else
+      estimate.m_Time += result;
+
+    if (m_Verbose)
+      engine.println("[PLAN] " + setup.command.getName() + " " + env + " " + OptionUtils.joinOptions(setup.options)
+	+ " (" + ((result == -1) ? "unknown" : formatDuration(result)) + ")", false);
+
+    return Math.max(0, result);
+  }
+
+  /**
+   * Turns the duration into a string (h:mm:ss.SSS).
+   *
+   * @param msec	the duration in msec
+   * @return		the string
+   */
+  public static String formatDuration(long msec) {
+    return String.format("%d:%02d:%02d.%03d", msec / 3600000, (msec / 60000) % 60, (msec / 1000) % 60, msec % 1000);
+  }
+
+  /**
+   * Generates the report.
+   *
+   * @param total	the estimated runtime (msec) of the instructions
+   * @return		the report
+   */
+  public String report(long total) {
+    StringBuilder	result;
+    int			unknown;
+
+    result = new StringBuilder();
+    result.append(String.format("%-20s %10s %10s %16s\n", "environment", "launches", "unknown", "estimated"));
+    unknown = 0;
+    for (String env: m_Estimates.keySet()) {
+      result.append(String.format("%-20s %10d %10d %16s\n",
+	env, m_Estimates.get(env).getLaunches(), m_Estimates.get(env).getUnknown(), formatDuration(m_Estimates.get(env).getTime())));
+      unknown += m_Estimates.get(env).getUnknown();
+    }
+    result.append("\n");
+    result.append(String.format("%10s  %s\n", "launches", "line"));
+    for (Line line: m_Lines.keySet())
+      result.append(String.format("%10d  %s\n", m_Lines.get(line), line.getInstruction()));
+    result.append("\n");
+    result.append("Total launches: ").append(getLaunches()).append("\n");
+    if (m_Skipped > 0)
+      result.append("Skipped instructions (up-to-date): ").append(m_Skipped).append("\n");
+    if (unknown > 0)
+      result.append("Launches without timings (not estimated): ").append(unknown).append("\n");
+    if (m_Background > 0)
+      result.append("Longest background job: ").append(formatDuration(m_Background)).append("\n");
+    result.append("Estimated runtime: ").append(formatDuration(Math.max(total, m_Background)));
+
+    return result.toString();
+  }
+}
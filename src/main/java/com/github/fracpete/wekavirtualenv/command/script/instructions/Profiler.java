@@ -0,0 +1,385 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Profiler.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script.instructions;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records invocation counts and timings for each {@link Line} of a script.
+ * The time of a line is split into preparation (expanding variables,
+ * parsing options, configuring the command) and execution. Execution times
+ * are inclusive, i.e., the time of a loop contains the time of its block.
+ * <br>
+ * The CPU time of child processes is obtained from /proc/self/stat and is
+ * therefore only available on Linux. When lines get executed concurrently
+ * (e.g., 'foreach --parallel'), the CPU time of the child processes cannot
+ * be attributed exactly.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class Profiler {
+
+  /** text output. */
+  public final static String FORMAT_TEXT = "text";
+
+  /** JSON output. */
+  public final static String FORMAT_JSON = "json";
+
+  /** the file with the process statistics. */
+  public final static String PROC_STAT = "/proc/self/stat";
+
+  /** the clock ticks per second used by /proc (USER_HZ). */
+  public final static int TICKS = 100;
+
+  /**
+   * The statistics of a single line.
+   */
+  public static class Entry {
+
+    /** the line. */
+    protected Line m_Line;
+
+    /** the position in the script. */
+    protected int m_Index;
+
+    /** the nesting level. */
+    protected int m_Level;
+
+    /** the number of invocations. */
+    protected int m_Count;
+
+    /** the total preparation time in nano-seconds. */
+    protected long m_Prepare;
+
+    /** the total execution time in nano-seconds. */
+    protected long m_Execute;
+
+    /** the CPU time of child processes in nano-seconds, -1 if not available. */
+    protected long m_CPU;
+
+    /**
+     * Initializes the entry.
+     *
+     * @param line	the line
+     * @param index	the position in the script
+     * @param level	the nesting level
+     */
+    public Entry(Line line, int index, int level) {
+      m_Line  = line;
+      m_Index = index;
+      m_Level = level;
+      m_CPU   = -1;
+    }
+
+    /**
+     * Returns the line.
+     *
+     * @return		the line
+     */
+    public Line getLine() {
+      return m_Line;
+    }
+
+    /**
+     * Returns the position in the script.
+     *
+     * @return		the position (1-based)
+     */
+    public int getIndex() {
+      return m_Index;
+    }
+
+    /**
+     * Returns the nesting level.
+     *
+     * @return		the level
+     */
+    public int getLevel() {
+      return m_Level;
+    }
+
+    /**
+     * Returns the number of invocations.
+     *
+     * @return		the count
+     */
+    public int getCount() {
+      return m_Count;
+    }
+
+    /**
+     * Returns the total time.
+     *
+     * @return		the time in nano-seconds
+     */
+    public long getTotal() {
+      return m_Prepare + m_Execute;
+    }
+
+    /**
+     * Returns the mean time per invocation.
+     *
+     * @return		the time in nano-seconds
+     */
+    public long getMean() {
+      if (m_Count == 0)
+	return 0;
+      return getTotal() / m_Count;
+    }
+
+    /**
+     * Returns the total preparation time.
+     *
+     * @return		the time in nano-seconds
+     */
+    public long getPrepare() {
+      return m_Prepare;
+    }
+
+    /**
+     * Returns the total execution time.
+     *
+     * @return		the time in nano-seconds
+     */
+    public long getExecute() {
+      return m_Execute;
+    }
+
+    /**
+     * Returns the CPU time of child processes.
+     *
+     * @return		the time in nano-seconds, -1 if not available
+     */
+    public long getCPU() {
+      return m_CPU;
+    }
+  }
+
+  /** the entries. */
+  protected Map<Line,Entry> m_Entries;
+
+  /**
+   * Initializes the profiler with the instructions of the script.
+   *
+   * @param instructions	the instructions to profile
+   */
+  public Profiler(Block instructions) {
+    super();
+    m_Entries = new IdentityHashMap<>();
+    add(instructions);
+  }
+
+  /**
+   * Adds entries for all the lines in the block (depth-first, in script order).
+   *
+   * @param block	the block to add
+   */
+  protected void add(Block block) {
+    for (Instruction instruction: block) {
+      if (instruction instanceof Block)
+	add((Block) instruction);
+      else if (!m_Entries.containsKey(instruction))
+	m_Entries.put((Line) instruction, new Entry((Line) instruction, m_Entries.size() + 1, block.getLevel()));
+    }
+  }
+
+  /**
+   * Returns the CPU time of the child processes of this JVM that have
+   * terminated so far (user and system).
+   *
+   * @return		the time in nano-seconds, -1 if not available
+   */
+  public static long getChildCPUTime() {
+    File	file;
+    String	stat;
+    String[]	parts;
+
+    file = new File(PROC_STAT);
+    if (!file.exists())
+      return -1;
+
+    try {
+      stat = new String(Files.readAllBytes(file.toPath()));
+      // skip pid and command, which can contain blanks
+      parts = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+      // cutime and cstime are fields 16 and 17
+      return (Long.parseLong(parts[13]) + Long.parseLong(parts[14])) * 1000000000L / TICKS;
+    }
+    catch (Exception e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Records an invocation of the line.
+   *
+   * @param line	the line that was executed
+   * @param prepare	the preparation time in nano-seconds
+   * @param execute	the execution time in nano-seconds
+   * @param cpu		the CPU time of child processes in nano-seconds, -1 if not available
+   */
+  public synchronized void record(Line line, long prepare, long execute, long cpu) {
+    Entry	entry;
+
+    entry = m_Entries.get(line);
+    if (entry == null) {
+      entry = new Entry(line, m_Entries.size() + 1, 0);
+      m_Entries.put(line, entry);
+    }
+    entry.m_Count++;
+    entry.m_Prepare += prepare;
+    entry.m_Execute += execute;
+    if (cpu > -1)
+      entry.m_CPU = Math.max(0, entry.m_CPU) + cpu;
+  }
+
+  /**
+   * Returns the entries of the lines that were executed, sorted by total
+   * time (descending).
+   *
+   * @return		the entries
+   */
+  public synchronized List<Entry> getEntries() {
+    List<Entry>	result;
+
+    result = new ArrayList<>();
+    for (Entry entry: m_Entries.values()) {
+      if (entry.getCount() > 0)
+	result.add(entry);
+    }
+    result.sort((Entry e1, Entry e2) -> {
+      int res = Long.compare(e2.getTotal(), e1.getTotal());
+      if (res == 0)
+	res = Integer.compare(e1.getIndex(), e2.getIndex());
+      return res;
+    });
+
+    return result;
+  }
+
+  /**
+   * Turns nano-seconds into milli-seconds.
+   *
+   * @param nanos	the nano-seconds
+   * @return		the milli-seconds
+   */
+  protected static double toMillis(long nanos) {
+    return nanos / 1000000.0;
+  }
+
+  /**
+   * Quotes the string for JSON.
+   *
+   * @param s		the string to quote
+   * @return		the quoted string
+   */
+  protected static String quoteJSON(String s) {
+    return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\t", "\\t") + "\"";
+  }
+
+  /**
+   * Generates the report as text table.
+   *
+   * @return		the report
+   */
+  public String toText() {
+    StringBuilder	result;
+    StringBuilder	indent;
+    int			i;
+
+    result = new StringBuilder();
+    result.append(String.format("%5s %8s %12s %12s %12s %12s %12s  %s\n",
+      "line", "count", "total[ms]", "mean[ms]", "prepare[ms]", "execute[ms]", "cpu[ms]", "instruction"));
+    for (Entry entry: getEntries()) {
+      indent = new StringBuilder();
+      for (i = 0; i < entry.getLevel(); i++)
+	indent.append("  ");
+      result.append(String.format("%5d %8d %12.1f %12.1f %12.1f %12.1f %12s  %s\n",
+	entry.getIndex(), entry.getCount(), toMillis(entry.getTotal()), toMillis(entry.getMean()),
+	toMillis(entry.getPrepare()), toMillis(entry.getExecute()),
+	(entry.getCPU() > -1) ? String.format("%.1f", toMillis(entry.getCPU())) : "n/a",
+	indent + entry.getLine().getInstruction()));
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Generates the report as JSON array.
+   *
+   * @return		the report
+   */
+  public String toJSON() {
+    StringBuilder	result;
+    boolean		first;
+
+    result = new StringBuilder();
+    result.append("[\n");
+    first = true;
+    for (Entry entry: getEntries()) {
+      if (!first)
+	result.append(",\n");
+      first = false;
+      result.append("  {");
+      result.append("\"line\": ").append(entry.getIndex());
+      result.append(", \"level\": ").append(entry.getLevel());
+      result.append(", \"count\": ").append(entry.getCount());
+      result.append(", \"total_ms\": ").append(toMillis(entry.getTotal()));
+      result.append(", \"mean_ms\": ").append(toMillis(entry.getMean()));
+      result.append(", \"prepare_ms\": ").append(toMillis(entry.getPrepare()));
+      result.append(", \"execute_ms\": ").append(toMillis(entry.getExecute()));
+      result.append(", \"cpu_ms\": ").append((entry.getCPU() > -1) ? "" + toMillis(entry.getCPU()) : "null");
+      result.append(", \"instruction\": ").append(quoteJSON(entry.getLine().getInstruction()));
+      result.append("}");
+    }
+    result.append("\n]");
+
+    return result.toString();
+  }
+
+  /**
+   * Generates the report in the specified format.
+   *
+   * @param format	the format, {@link #FORMAT_TEXT} or {@link #FORMAT_JSON}
+   * @return		the report
+   */
+  public String toString(String format) {
+    if (format.equals(FORMAT_JSON))
+      return toJSON();
+    else
+      return toText();
+  }
+
+  /**
+   * Returns the report as text.
+   *
+   * @return		the report
+   */
+  @Override
+  public String toString() {
+    return toText();
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ScopedContext.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script.instructions;
+
+import com.github.fracpete.wekavirtualenv.command.script.Jobs;
+import com.github.fracpete.wekavirtualenv.command.script.Variables;
+
+/**
+ * Context that uses its own variables scope, but forwards errors to the
+ * parent context. Errors get forwarded in a synchronized fashion, allowing
+ * several scopes to be used concurrently.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ScopedContext
+  implements EngineContext {
+
+  /** the parent context. */
+  protected EngineContext m_Parent;
+
+  /** the variables. */
+  protected Variables m_Variables;
+
+  /** the absolute path of the included script file, null if none. */
+  protected String m_Include;
+
+  /**
+   * Initializes the context with a new scope of the parent's variables.
+   *
+   * @param parent	the parent context
+   */
+  public ScopedContext(EngineContext parent) {
+    this(parent, parent.getVariables().newScope());
+  }
+
+  /**
+   * Initializes the context.
+   *
+   * @param parent	the parent context
+   * @param variables	the variables to use
+   */
+  public ScopedContext(EngineContext parent, Variables variables) {
+    this(parent, variables, null);
+  }
+
+  /**
+   * Initializes the context for an included script file.
+   *
+   * @param parent	the parent context
+   * @param variables	the variables to use
+   * @param include	the absolute path of the included script file, null if none
+   */
+  public ScopedContext(EngineContext parent, Variables variables, String include) {
+    super();
+    m_Parent    = parent;
+    m_Variables = variables;
+    m_Include   = include;
+  }
+
+  /**
+   * Returns the parent context.
+   *
+   * @return		the parent
+   */
+  public EngineContext getParent() {
+    return m_Parent;
+  }
+
+  /**
+   * Returns the managed variables.
+   *
+   * @return		the variables
+   */
+  @Override
+  public Variables getVariables() {
+    return m_Variables;
+  }
+
+  /**
+   * Returns the jobs running in the background.
+   *
+   * @return		the jobs of the parent
+   */
+  @Override
+  public Jobs getJobs() {
+    return m_Parent.getJobs();
+  }
+
+  /**
+   * Returns the state for incremental execution.
+   *
+   * @return		the state of the parent
+   */
+  @Override
+  public IncrementalState getIncrementalState() {
+    return m_Parent.getIncrementalState();
+  }
+
+  /**
+   * Returns the profiler.
+   *
+   * @return		the profiler of the parent
+   */
+  @Override
+  public Profiler getProfiler() {
+    return m_Parent.getProfiler();
+  }
+
+  /**
+   * Returns the timings of launched commands.
+   *
+   * @return		the timings of the parent
+   */
+  @Override
+  public TimingHistory getTimingHistory() {
+    return m_Parent.getTimingHistory();
+  }
+
+  /**
+   * Returns whether the script file is currently being executed, i.e., is
+   * the script itself or included by it (directly or indirectly).
+   *
+   * @param path	the absolute path of the script file
+   * @return		true if being executed
+   */
+  @Override
+  public boolean isIncluding(String path) {
+    return path.equals(m_Include) || m_Parent.isIncluding(path);
+  }
+
+  /**
+   * Adds the error message.
+   *
+   * @param msg		the error message
+   * @param t		the exception
+   */
+  @Override
+  public void addError(String msg, Throwable t) {
+    synchronized (m_Parent) {
+      m_Parent.addError(msg, t);
+    }
+  }
+
+  /**
+   * Adds the error message.
+   *
+   * @param msg		the error message
+   */
+  @Override
+  public void addError(String msg) {
+    synchronized (m_Parent) {
+      m_Parent.addError(msg);
+    }
+  }
+
+  /**
+   * Returns whether any errors were recorded.
+   *
+   * @return		true if errors present
+   */
+  @Override
+  public boolean hasErrors() {
+    synchronized (m_Parent) {
+      return m_Parent.hasErrors();
+    }
+  }
+
+  /**
+   * Returns the errors.
+   *
+   * @return		the errors, null if none present
+   */
+  @Override
+  public String getErrors() {
+    synchronized (m_Parent) {
+      return m_Parent.getErrors();
+    }
+  }
+}
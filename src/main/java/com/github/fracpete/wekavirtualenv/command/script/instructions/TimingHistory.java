@@ -0,0 +1,218 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TimingHistory.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.command.script.instructions;
+
+import com.github.fracpete.wekavirtualenv.command.Command;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.Properties;
+
+/**
+ * Keeps track of how long launched commands took, for estimating the
+ * runtime of scripts. Timings are stored per command, environment and
+ * class (e.g., 'run weka381 weka.classifiers.trees.J48') as well as per
+ * command and environment, which is used as fallback.
+ * <br>
+ * As several scripts can run at the same time, only the timings recorded
+ * since the last save get merged into the file, while holding a lock on it.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TimingHistory {
+
+  /** the option for the class. */
+  public final static String OPTION_CLASS = "--class";
+
+  /** the suffix for the number of executions. */
+  public final static String SUFFIX_COUNT = ".count";
+
+  /** the suffix for the total time in msec. */
+  public final static String SUFFIX_TOTAL = ".total";
+
+  /** the file to store the timings in. */
+  protected File m_File;
+
+  /** the timings. */
+  protected Properties m_Timings;
+
+  /** the timings recorded since the last save (count/total increments). */
+  protected Properties m_Recorded;
+
+  /**
+   * Initializes the history.
+   *
+   * @param file	the file to store the timings in
+   */
+  public TimingHistory(File file) {
+    super();
+    m_File     = file;
+    m_Timings  = new Properties();
+    m_Recorded = new Properties();
+  }
+
+  /**
+   * Returns the timings file.
+   *
+   * @return		the file
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Loads the timings, if the file exists.
+   *
+   * @throws IOException	if loading fails
+   */
+  public synchronized void load() throws IOException {
+    m_Timings.clear();
+    if (!m_File.exists())
+      return;
+    try (InputStream in = new FileInputStream(m_File)) {
+      m_Timings.load(in);
+    }
+  }
+
+  /**
+   * Adds the amount to the numeric property.
+   *
+   * @param props	the properties to update
+   * @param key		the key of the property
+   * @param amount	the amount to add
+   */
+  protected static void add(Properties props, String key, long amount) {
+    props.setProperty(key, "" + (Long.parseLong(props.getProperty(key, "0")) + amount));
+  }
+
+  /**
+   * Merges the timings recorded since the last save into the file (if
+   * any recorded), while holding a lock on it. Afterwards, the timings
+   * reflect the content of the file.
+   *
+   * @throws IOException	if saving fails
+   */
+  public synchronized void save() throws IOException {
+    Properties			merged;
+    byte[]			data;
+    ByteArrayOutputStream	out;
+    FileLock			lock;
+
+    if (m_Recorded.isEmpty())
+      return;
+    if (!m_File.getAbsoluteFile().getParentFile().exists() && !m_File.getAbsoluteFile().getParentFile().mkdirs())
+      throw new IOException("Failed to create directory for: " + m_File);
+
+    try (RandomAccessFile file = new RandomAccessFile(m_File, "rw")) {
+      lock = file.getChannel().lock();
+      try {
+	data = new byte[(int) file.length()];
+	file.readFully(data);
+	merged = new Properties();
+	merged.load(new ByteArrayInputStream(data));
+	for (String key: m_Recorded.stringPropertyNames())
+	  add(merged, key, Long.parseLong(m_Recorded.getProperty(key)));
+	out = new ByteArrayOutputStream();
+	merged.store(out, "timings of launched commands");
+	file.seek(0);
+	file.write(out.toByteArray());
+	file.setLength(out.size());
+	m_Timings = merged;
+      }
+      finally {
+	lock.release();
+      }
+    }
+    m_Recorded.clear();
+  }
+
+  /**
+   * Generates the keys for the command: command/environment/class and
+   * command/environment.
+   *
+   * @param cmd		the configured command
+   * @param options	the options for the command
+   * @return		the keys, most specific first
+   */
+  public static String[] getKeys(Command cmd, String[] options) {
+    String	key;
+    String	cls;
+    int		i;
+
+    key = cmd.getName();
+    if (cmd.getEnv() != null)
+      key += " " + cmd.getEnv().name;
+    cls = null;
+    for (i = 0; i < options.length - 1; i++) {
+      if (options[i].equals(OPTION_CLASS)) {
+	cls = options[i + 1];
+	break;
+      }
+    }
+
+    if (cls == null)
+      return new String[]{key};
+    else
+      return new String[]{key + " " + cls, key};
+  }
+
+  /**
+   * Records the time the command took.
+   *
+   * @param cmd		the configured command
+   * @param options	the options for the command
+   * @param msec	the time in msec
+   */
+  public synchronized void record(Command cmd, String[] options, long msec) {
+    for (String key: getKeys(cmd, options)) {
+      add(m_Timings, key + SUFFIX_COUNT, 1);
+      add(m_Timings, key + SUFFIX_TOTAL, msec);
+      add(m_Recorded, key + SUFFIX_COUNT, 1);
+      add(m_Recorded, key + SUFFIX_TOTAL, msec);
+    }
+  }
+
+  /**
+   * Estimates the time the command will take, using the mean of the
+   * previous executions.
+   *
+   * @param cmd		the configured command
+   * @param options	the options for the command
+   * @return		the time in msec, -1 if no timings available
+   */
+  public synchronized long estimate(Command cmd, String[] options) {
+    long	count;
+
+    for (String key: getKeys(cmd, options)) {
+      count = Long.parseLong(m_Timings.getProperty(key + SUFFIX_COUNT, "0"));
+      if (count > 0)
+	return Long.parseLong(m_Timings.getProperty(key + SUFFIX_TOTAL, "0")) / count;
+    }
+
+    return -1;
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AhoCorasick.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.core;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton for locating any of several literal strings in a
+ * single pass over the text. Transitions for ASCII characters are fully
+ * resolved into a lookup table, other characters follow the failure links.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class AhoCorasick
+  implements Serializable {
+
+  /** the size of the lookup table per state. */
+  protected final static int ASCII = 128;
+
+  /** the patterns. */
+  protected String[] m_Patterns;
+
+  /** the transitions for ASCII characters (per state). */
+  protected List<int[]> m_Ascii;
+
+  /** the transitions for non-ASCII characters (per state, may be null). */
+  protected List<Map<Character,Integer>> m_Other;
+
+  /** the failure links (per state). */
+  protected int[] m_Fail;
+
+  /** the index of the pattern that ends in a state, -1 if none (per state). */
+  protected int[] m_Output;
+
+  /**
+   * Initializes the automaton with the patterns.
+   *
+   * @param patterns	the literal strings to look for, must not be empty
+   */
+  public AhoCorasick(String[] patterns) {
+    super();
+    m_Patterns = patterns.clone();
+    build();
+  }
+
+  /**
+   * Returns the patterns.
+   *
+   * @return		the patterns
+   */
+  public String[] getPatterns() {
+    return m_Patterns;
+  }
+
+  /**
+   * Adds a new state.
+   *
+   * @return		the index of the state
+   */
+  protected int newState() {
+    int[]	ascii;
+
+    ascii = new int[ASCII];
+    Arrays.fill(ascii, -1);
+    m_Ascii.add(ascii);
+    m_Other.add(null);
+    return m_Ascii.size() - 1;
+  }
+
+  /**
+   * Returns the child state in the trie.
+   *
+   * @param state	the state
+   * @param c		the character
+   * @return		the child state, -1 if none
+   */
+  protected int child(int state, char c) {
+    Map<Character,Integer>	other;
+    Integer			next;
+
+    if (c < ASCII)
+      return m_Ascii.get(state)[c];
+
+    other = m_Other.get(state);
+    if (other == null)
+      return -1;
+    next = other.get(c);
+    return (next == null) ? -1 : next;
+  }
+
+  /**
+   * Builds the trie, the failure links and the ASCII transitions.
+   */
+  protected void build() {
+    List<Integer>	output;
+    Deque<Integer>	queue;
+    int			state;
+    int			next;
+    int			fail;
+    int			i;
+    int			n;
+    char		c;
+    int[]		ascii;
+
+    m_Ascii = new ArrayList<>();
+    m_Other = new ArrayList<>();
+    output  = new ArrayList<>();
+    newState();
+    output.add(-1);
+
+    // trie
+    for (i = 0; i < m_Patterns.length; i++) {
+      state = 0;
+      for (n = 0; n < m_Patterns[i].length(); n++) {
+	c    = m_Patterns[i].charAt(n);
+	next = child(state, c);
+	if (next == -1) {
+	  next = newState();
+	  output.add(-1);
+	  if (c < ASCII) {
+	    m_Ascii.get(state)[c] = next;
+	  }
+	  else {
+	    if (m_Other.get(state) == null)
+	      m_Other.set(state, new HashMap<>());
+	    m_Other.get(state).put(c, next);
+	  }
+	}
+	state = next;
+      }
+      if (output.get(state) == -1)
+	output.set(state, i);
+    }
+
+    m_Fail   = new int[m_Ascii.size()];
+    m_Output = new int[m_Ascii.size()];
+    for (i = 0; i < m_Output.length; i++)
+      m_Output[i] = output.get(i);
+
+    // breadth-first: failure links and full ASCII transitions
+    queue = new ArrayDeque<>();
+    ascii = m_Ascii.get(0);
+    for (c = 0; c < ASCII; c++) {
+      if (ascii[c] == -1) {
+	ascii[c] = 0;
+      }
+      else {
+	m_Fail[ascii[c]] = 0;
+	queue.add(ascii[c]);
+      }
+    }
+    if (m_Other.get(0) != null) {
+      for (Integer s: m_Other.get(0).values()) {
+	m_Fail[s] = 0;
+	queue.add(s);
+      }
+    }
+
+    while (!queue.isEmpty()) {
+      state = queue.poll();
+      fail  = m_Fail[state];
+      if ((m_Output[fail] > -1) && ((m_Output[state] == -1) || (m_Output[fail] < m_Output[state])))
+	m_Output[state] = m_Output[fail];
+
+      ascii = m_Ascii.get(state);
+      for (c = 0; c < ASCII; c++) {
+	if (ascii[c] == -1) {
+	  ascii[c] = m_Ascii.get(fail)[c];
+	}
+	else {
+	  m_Fail[ascii[c]] = m_Ascii.get(fail)[c];
+	  queue.add(ascii[c]);
+	}
+      }
+      if (m_Other.get(state) != null) {
+	for (Map.Entry<Character,Integer> entry: m_Other.get(state).entrySet()) {
+	  m_Fail[entry.getValue()] = transition(fail, entry.getKey());
+	  queue.add(entry.getValue());
+	}
+      }
+    }
+  }
+
+  /**
+   * Performs the transition from the state using the character.
+   *
+   * @param state	the current state
+   * @param c		the character
+   * @return		the new state
+   */
+  protected int transition(int state, char c) {
+    int		next;
+
+    if (c < ASCII)
+      return m_Ascii.get(state)[c];
+
+    while (true) {
+      next = child(state, c);
+      if (next > -1)
+	return next;
+      if (state == 0)
+	return 0;
+      state = m_Fail[state];
+    }
+  }
+
+  /**
+   * Locates the first occurrence of any of the patterns in the text.
+   *
+   * @param text	the text to search
+   * @return		the index of the pattern that was found, -1 if none
+   */
+  public int find(CharSequence text) {
+    int		state;
+    int		i;
+
+    state = 0;
+    for (i = 0; i < text.length(); i++) {
+      state = transition(state, text.charAt(i));
+      if (m_Output[state] > -1)
+	return m_Output[state];
+    }
+
+    return -1;
+  }
+
+  /**
+   * Checks whether any of the patterns occurs in the text.
+   *
+   * @param text	the text to search
+   * @return		true if at least one pattern was found
+   */
+  public boolean matches(CharSequence text) {
+    return (find(text) > -1);
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DirectoryWalker.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.core;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Locates files or directories below a directory. Sub-directories get
+ * traversed in parallel, using the attributes read once per entry rather
+ * than querying the file system several times. The results are in the same
+ * order as with the sequential traversal (see {@link #stream(Path)}), the
+ * limit gets applied to the ordered results. Symbolic links are neither
+ * followed nor reported.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class DirectoryWalker
+  implements Serializable {
+
+  /** whether to locate directories rather than files. */
+  protected boolean m_Directories;
+
+  /** the maximum depth (1 = only the directory itself), -1 for unlimited. */
+  protected int m_MaxDepth;
+
+  /** for matching the names (excl path), null to match all. */
+  protected PathMatcher m_Matcher;
+
+  /** the maximum number of results, -1 for unlimited. */
+  protected int m_Limit;
+
+  /** the number of threads to use, &lt;= 0 for number of processors. */
+  protected int m_Threads;
+
+  /**
+   * Task for traversing a single directory.
+   */
+  protected class WalkTask
+    extends RecursiveTask<List<String>> {
+
+    /** the directory to traverse. */
+    protected Path m_Dir;
+
+    /** the depth of the entries in the directory. */
+    protected int m_Depth;
+
+    /**
+     * Initializes the task.
+     *
+     * @param dir	the directory to traverse
+     * @param depth	the depth of the entries in the directory
+     */
+    public WalkTask(Path dir, int depth) {
+      super();
+      m_Dir   = dir;
+      m_Depth = depth;
+    }
+
+    /**
+     * Traverses the directory, forking tasks for the sub-directories.
+     *
+     * @return		the matches
+     */
+    @Override
+    protected List<String> compute() {
+      List<String>		result;
+      List<Object>		items;
+      BasicFileAttributes	attr;
+      WalkTask			task;
+      int			prefix;
+
+      result = new ArrayList<>();
+      prefix = 0;
+
+      // list directory, entries are either matches or sub-tasks
+      items = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(m_Dir)) {
+	for (Path path: stream) {
+	  // the matches listed so far (without preceding sub-tasks) suffice
+	  if (isLimitReached(prefix))
+	    break;
+	  try {
+	    attr = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+	  }
+	  catch (IOException e) {
+	    continue;
+	  }
+	  if (attr.isDirectory()) {
+	    if (m_Directories && matches(path)) {
+	      items.add(path.toString());
+	      if (prefix == items.size() - 1)
+		prefix++;
+	    }
+	    if ((m_MaxDepth == -1) || (m_Depth < m_MaxDepth)) {
+	      task = new WalkTask(path, m_Depth + 1);
+	      task.fork();
+	      items.add(task);
+	    }
+	  }
+	  else if (!m_Directories && attr.isRegularFile() && matches(path)) {
+	    items.add(path.toString());
+	    if (prefix == items.size() - 1)
+	      prefix++;
+	  }
+	}
+      }
+      catch (IOException e) {
+	// ignored, e.g., permission denied
+      }
+
+      // collect results in order, cancelling the remaining sub-tasks once the limit is reached
+      for (Object item: items) {
+	if (isLimitReached(result.size())) {
+	  if (item instanceof WalkTask)
+	    ((WalkTask) item).cancel(false);
+	  continue;
+	}
+	if (item instanceof WalkTask)
+	  result.addAll(((WalkTask) item).join());
+	else
+	  result.add((String) item);
+      }
+
+      return limit(result);
+    }
+  }
+
+  /**
+   * Initializes the walker.
+   *
+   * @param directories	whether to locate directories rather than files
+   * @param maxDepth	the maximum depth (1 = only the directory itself), -1 for unlimited
+   * @param matcher	for matching the names (excl path), null to match all
+   * @param limit	the maximum number of results, -1 for unlimited
+   * @param threads	the number of threads to use, &lt;= 0 for number of processors
+   */
+  public DirectoryWalker(boolean directories, int maxDepth, PathMatcher matcher, int limit, int threads) {
+    super();
+    m_Directories = directories;
+    m_MaxDepth    = maxDepth;
+    m_Matcher     = matcher;
+    m_Limit       = limit;
+    m_Threads     = threads;
+  }
+
+  /**
+   * Checks whether the name of the path matches.
+   *
+   * @param path	the path to check
+   * @return		true if a match
+   */
+  protected boolean matches(Path path) {
+    return (m_Matcher == null) || m_Matcher.matches(path.getFileName());
+  }
+
+  /**
+   * Returns whether the number of ordered results reaches the limit.
+   *
+   * @param count	the number of results
+   * @return		true if reached
+   */
+  protected boolean isLimitReached(int count) {
+    return (m_Limit > -1) && (count >= m_Limit);
+  }
+
+  /**
+   * Applies the limit to the ordered results.
+   *
+   * @param results	the results
+   * @return		the (potentially truncated) results
+   */
+  protected List<String> limit(List<String> results) {
+    if ((m_Limit > -1) && (results.size() > m_Limit))
+      return new ArrayList<>(results.subList(0, m_Limit));
+    return results;
+  }
+
+  /**
+   * Traverses the directory and returns the matches (absolute paths).
+   *
+   * @param dir		the directory to traverse
+   * @return		the matches
+   */
+  public List<String> walk(Path dir) {
+    ForkJoinPool	pool;
+
+    pool = new ForkJoinPool((m_Threads > 0) ? m_Threads : Runtime.getRuntime().availableProcessors());
+    try {
+      return pool.invoke(new WalkTask(dir.toAbsolutePath(), 1));
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Lazily traverses the directory (sequentially) and returns the matches
+   * (absolute paths).
+   *
+   * @param dir		the directory to traverse
+   * @return		the stream of matches, must be closed by the caller
+   * @throws IOException	if traversal fails
+   */
+  public Stream<String> stream(Path dir) throws IOException {
+    Path		root;
+    Stream<Path>	result;
+
+    root   = dir.toAbsolutePath();
+    result = Files.walk(root, (m_MaxDepth == -1) ? Integer.MAX_VALUE : m_MaxDepth)
+      .filter((Path path) -> !path.equals(root) && (m_Directories ? Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) : Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)))
+      .filter((Path path) -> (m_Matcher == null) || m_Matcher.matches(path.getFileName()));
+    if (m_Limit > -1)
+      result = result.limit(m_Limit);
+
+    return result.map(Path::toString);
+  }
+}
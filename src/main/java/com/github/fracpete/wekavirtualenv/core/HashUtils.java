@@ -0,0 +1,144 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * HashUtils.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helper class for computing SHA-256 hashes of strings and file contents.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class HashUtils {
+
+  /** the maximum number of file hashes to cache. */
+  public final static int MAX_FILE_HASHES = 10000;
+
+  /** the cached file hashes (path/mtime/length - hash). */
+  protected final static Map<String,String> FILE_HASHES = new LinkedHashMap<String,String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String,String> eldest) {
+      return (size() > MAX_FILE_HASHES);
+    }
+  };
+
+  /**
+   * Turns the bytes into a hexadecimal string.
+   *
+   * @param bytes	the bytes to convert
+   * @return		the hex string
+   */
+  public static String toHex(byte[] bytes) {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    for (byte b: bytes)
+      result.append(String.format("%02x", b));
+
+    return result.toString();
+  }
+
+  /**
+   * Returns a new SHA-256 digest.
+   *
+   * @return		the digest
+   */
+  protected static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Computes the SHA-256 hash of the string.
+   *
+   * @param s		the string to hash
+   * @return		the hash
+   */
+  public static String hash(String s) {
+    return toHex(newDigest().digest(s.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Computes the SHA-256 hash of the strings.
+   *
+   * @param parts	the strings to hash
+   * @return		the hash
+   */
+  public static String hash(List<String> parts) {
+    MessageDigest	digest;
+
+    digest = newDigest();
+    for (String part: parts) {
+      digest.update(part.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Computes the SHA-256 hash of the file content. Hashes get cached based
+   * on path, timestamp and size.
+   *
+   * @param file	the file to hash
+   * @return		the hash
+   * @throws IOException	if reading fails
+   */
+  public static String hash(File file) throws IOException {
+    String		key;
+    String		result;
+    MessageDigest	digest;
+    byte[]		buffer;
+    int			read;
+
+    key = file.getAbsolutePath() + "\t" + file.lastModified() + "\t" + file.length();
+    synchronized (FILE_HASHES) {
+      result = FILE_HASHES.get(key);
+    }
+    if (result != null)
+      return result;
+
+    digest = newDigest();
+    buffer = new byte[65536];
+    try (InputStream in = new FileInputStream(file)) {
+      while ((read = in.read(buffer)) != -1)
+	digest.update(buffer, 0, read);
+    }
+    result = toHex(digest.digest());
+    synchronized (FILE_HASHES) {
+      FILE_HASHES.put(key, result);
+    }
+
+    return result;
+  }
+}
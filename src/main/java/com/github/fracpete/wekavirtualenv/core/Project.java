@@ -71,4 +71,22 @@ public class Project {
   public static String getEnvsDir() {
     return getHomeDir() + File.separator + "envs";
   }
+
+  /**
+   * Returns the directory for cached results.
+   *
+   * @return 		the cache directory
+   */
+  public static String getCacheDir() {
+    return getHomeDir() + File.separator + "cache";
+  }
+
+  /**
+   * Returns the file with the timings of previously launched commands.
+   *
+   * @return 		the file
+   */
+  public static String getTimingsFile() {
+    return getHomeDir() + File.separator + "timings.props";
+  }
 }
@@ -0,0 +1,305 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ResultCache.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.wekavirtualenv.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Content-addressed cache for the output and exit code of processes.
+ * Entries are files named after the hash of the key, least recently used
+ * entries get removed once the total size exceeds the limit.
+ * <br>
+ * The output gets written to a temporary file while the process is running,
+ * followed by the exit code once it finished. Only complete entries get
+ * moved into place.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ResultCache {
+
+  /** the extension of cache entries. */
+  public final static String EXTENSION = ".result";
+
+  /** the prefix for the exit code in an entry. */
+  public final static String EXIT_CODE = "exit=";
+
+  /** the prefix for stdout lines in an entry. */
+  public final static char STDOUT = 'O';
+
+  /** the prefix for stderr lines in an entry. */
+  public final static char STDERR = 'E';
+
+  /**
+   * Interface for receiving the lines of a cached result.
+   */
+  public interface ResultListener {
+
+    /**
+     * Gets called for each line of the output.
+     *
+     * @param line	the line
+     * @param stdout	whether stdout or stderr
+     */
+    public void lineOccurred(String line, boolean stdout);
+  }
+
+  /**
+   * Writes the output of a process to a temporary file for storing it in
+   * the cache.
+   */
+  public static class Result {
+
+    /** the temporary file. */
+    protected File m_File;
+
+    /** the writer, null if closed. */
+    protected BufferedWriter m_Writer;
+
+    /** the exception that occurred while writing, null if none. */
+    protected IOException m_Failure;
+
+    /**
+     * Initializes the result.
+     *
+     * @param file	the temporary file to write to
+     * @throws IOException	if opening the file fails
+     */
+    protected Result(File file) throws IOException {
+      m_File   = file;
+      m_Writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the temporary file.
+     *
+     * @return		the file
+     */
+    public File getFile() {
+      return m_File;
+    }
+
+    /**
+     * Adds the line.
+     *
+     * @param line	the line
+     * @param stdout	whether stdout or stderr
+     */
+    public synchronized void add(String line, boolean stdout) {
+      if (m_Writer == null)
+	return;
+      try {
+	m_Writer.write(stdout ? STDOUT : STDERR);
+	m_Writer.write(line);
+	m_Writer.newLine();
+      }
+      catch (IOException e) {
+	m_Failure = e;
+	close();
+      }
+    }
+
+    /**
+     * Appends the exit code and closes the file.
+     *
+     * @param exitCode	the exit code of the process
+     * @throws IOException	if writing failed
+     */
+    protected synchronized void finish(int exitCode) throws IOException {
+      if (m_Failure != null)
+	throw m_Failure;
+      if (m_Writer == null)
+	throw new IOException("Result already closed: " + m_File);
+      m_Writer.write(EXIT_CODE + exitCode);
+      m_Writer.newLine();
+      m_Writer.close();
+      m_Writer = null;
+    }
+
+    /**
+     * Closes the writer, ignoring any errors.
+     */
+    protected synchronized void close() {
+      if (m_Writer == null)
+	return;
+      try {
+	m_Writer.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+      m_Writer = null;
+    }
+
+    /**
+     * Closes the writer and removes the temporary file, if still present.
+     */
+    public synchronized void discard() {
+      close();
+      if (m_File.exists())
+	m_File.delete();
+    }
+  }
+
+  /** the directory with the entries. */
+  protected File m_Dir;
+
+  /** the maximum total size in bytes. */
+  protected long m_MaxSize;
+
+  /**
+   * Initializes the cache.
+   *
+   * @param dir		the directory for the entries
+   * @param maxSize	the maximum total size in bytes
+   */
+  public ResultCache(File dir, long maxSize) {
+    super();
+    m_Dir     = dir;
+    m_MaxSize = maxSize;
+  }
+
+  /**
+   * Returns the file for the key.
+   *
+   * @param key		the key (hash)
+   * @return		the file
+   */
+  protected File getFile(String key) {
+    return new File(m_Dir, key + EXTENSION);
+  }
+
+  /**
+   * Checks whether a result is cached for the key.
+   *
+   * @param key		the key (hash)
+   * @return		true if cached
+   */
+  public boolean contains(String key) {
+    return getFile(key).exists();
+  }
+
+  /**
+   * Creates a new result for writing the output of the process with the
+   * given key to.
+   *
+   * @param key		the key (hash)
+   * @return		the result
+   * @throws IOException	if creating the temporary file fails
+   */
+  public Result newResult(String key) throws IOException {
+    if (!m_Dir.exists() && !m_Dir.mkdirs())
+      throw new IOException("Failed to create cache directory: " + m_Dir);
+
+    return new Result(File.createTempFile(key, ".tmp", m_Dir));
+  }
+
+  /**
+   * Replays the cached result, if available.
+   *
+   * @param key		the key (hash)
+   * @param listener	the listener to send the output to
+   * @return		the exit code, null if not cached
+   * @throws IOException	if reading fails
+   */
+  public Integer replay(String key, ResultListener listener) throws IOException {
+    File	file;
+    Integer	result;
+    String	line;
+
+    file = getFile(key);
+    if (!file.exists())
+      return null;
+
+    // mark as recently used
+    file.setLastModified(System.currentTimeMillis());
+
+    result = null;
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      while ((line = reader.readLine()) != null) {
+	if (line.isEmpty())
+	  continue;
+	if (line.startsWith(EXIT_CODE))
+	  result = Integer.parseInt(line.substring(EXIT_CODE.length()));
+	else
+	  listener.lineOccurred(line.substring(1), line.charAt(0) == STDOUT);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Stores the result in the cache and evicts the least recently used
+   * entries if the cache exceeds its size. The result gets discarded if
+   * storing fails.
+   *
+   * @param key		the key (hash)
+   * @param exitCode	the exit code of the process
+   * @param result	the output of the process
+   * @throws IOException	if writing fails
+   * @see		#newResult(String)
+   */
+  public void store(String key, int exitCode, Result result) throws IOException {
+    try {
+      result.finish(exitCode);
+      Files.move(result.getFile().toPath(), getFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      result.discard();
+      throw e;
+    }
+
+    evict();
+  }
+
+  /**
+   * Removes the least recently used entries until the cache fits its size.
+   */
+  protected void evict() {
+    File[]	files;
+    long	total;
+    int		i;
+
+    files = m_Dir.listFiles((File dir, String name) -> name.endsWith(EXTENSION));
+    if (files == null)
+      return;
+
+    total = 0;
+    for (File file: files)
+      total += file.length();
+    if (total <= m_MaxSize)
+      return;
+
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (i = 0; (i < files.length) && (total > m_MaxSize); i++) {
+      total -= files[i].length();
+      files[i].delete();
+    }
+  }
+}
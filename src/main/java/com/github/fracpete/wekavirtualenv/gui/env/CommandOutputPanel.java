@@ -22,7 +22,8 @@ package com.github.fracpete.wekavirtualenv.gui.env;
 
 import com.github.fracpete.jclipboardhelper.ClipboardHelper;
 import com.github.fracpete.wekavirtualenv.command.Command;
-import com.github.fracpete.wekavirtualenv.command.OutputListener;
+import com.github.fracpete.wekavirtualenv.command.OutputEvent;
+import com.github.fracpete.wekavirtualenv.command.OutputEventListener;
 import com.github.fracpete.wekavirtualenv.gui.core.FileChooser;
 import com.github.fracpete.wekavirtualenv.gui.core.IconHelper;
 import nz.ac.waikato.cms.core.FileUtils;
@@ -35,6 +36,9 @@ import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import java.awt.BorderLayout;
@@ -50,7 +54,7 @@ import java.awt.event.ActionEvent;
  */
 public class CommandOutputPanel
   extends BasePanel
-  implements OutputListener {
+  implements OutputEventListener {
 
   /** the tabbed pane this panel belongs to. */
   protected JTabbedPane m_TabbedPane;
@@ -204,22 +208,55 @@ public class CommandOutputPanel
   }
 
   /**
-   * Gets called when output was produced.
+   * Appends the line and a newline to the output. The line gets inserted
+   * into the document as is, to avoid creating a copy of it. Uses the length
+   * of the document rather than the text for checking whether the caret is
+   * at the end, to avoid copying the complete output with every line.
    *
-   * @param line	the line to process
+   * @param line	the line to append (excl newline)
    * @param stdout	whether stdout or stderr
    */
-  public void outputOccurred(String line, boolean stdout) {
-    boolean 	atEnd;
-
-    atEnd = (m_TextArea.getCaretPosition() == m_TextArea.getText().length());
-    m_TextArea.append(line + "\n", stdout ? m_StdOutAttributeSet : m_StdErrAttributeSet);
+  protected void append(String line, boolean stdout) {
+    Document		doc;
+    AttributeSet	attr;
+    boolean 		atEnd;
+
+    doc   = m_TextArea.getDocument();
+    attr  = stdout ? m_StdOutAttributeSet : m_StdErrAttributeSet;
+    atEnd = (m_TextArea.getCaretPosition() == doc.getLength());
+    try {
+      doc.insertString(doc.getLength(), line, attr);
+      doc.insertString(doc.getLength(), "\n", attr);
+    }
+    catch (BadLocationException e) {
+      // can't happen, as always appending at the end
+    }
     if (atEnd)
       m_TextArea.setCaretPositionLast();
 
     updateButtons();
   }
 
+  /**
+   * Gets called when output was produced.
+   *
+   * @param line	the line to process
+   * @param stdout	whether stdout or stderr
+   */
+  public void outputOccurred(String line, boolean stdout) {
+    append(line, stdout);
+  }
+
+  /**
+   * Gets called when output was produced. Uses the line of the event
+   * directly.
+   *
+   * @param e		the event
+   */
+  public void outputEventOccurred(OutputEvent e) {
+    append(e.getLine(), e.isStdOut());
+  }
+
   /**
    * Clears the output.
    */